@@ -0,0 +1,98 @@
+package com.lamarjs.route_tracker.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.lamarjs.route_tracker.metrics.BustimeMetrics;
+import com.lamarjs.route_tracker.services.ApiKeyPool;
+import com.lamarjs.route_tracker.services.ApiKeyPool.Selection;
+import com.lamarjs.route_tracker.services.BustimeAPIRequest;
+import com.lamarjs.route_tracker.services.BustimeResponseParser;
+import com.lamarjs.route_tracker.services.JsonPathConfiguration;
+import com.lamarjs.route_tracker.services.QuotaGovernor;
+import com.lamarjs.route_tracker.services.RequestHedger;
+import com.lamarjs.route_tracker.services.UpstreamGuard;
+
+/**
+ * Shared fixtures for the benchmarks: the sample CTA responses from
+ * src/test/resources/sample_json_responses, and a {@link BustimeAPIRequest}
+ * wired the same way as in the application but sending its requests to an in
+ * memory transport that answers with those samples.
+ */
+final class BenchmarkSupport {
+
+	static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+	static final Configuration JSON_PATH_CONFIG = new JsonPathConfiguration().configuration(OBJECT_MAPPER);
+
+	private BenchmarkSupport() {
+	}
+
+	static String sample(String name) {
+		try {
+			return IOUtils.toString(
+					BenchmarkSupport.class.getClassLoader().getResourceAsStream("sample_json_responses/" + name),
+					StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new IllegalStateException("Missing sample response: " + name, e);
+		}
+	}
+
+	/**
+	 * @return A request service whose upstream calls are answered from the
+	 *         sample responses, with a quota that never throttles.
+	 */
+	static BustimeAPIRequest stubbedRequestService(ExecutorService executor) {
+		RestTemplate restTemplate = new RestTemplate(new SampleTransport());
+		QuotaGovernor quotaGovernor = new QuotaGovernor(Long.MAX_VALUE / 2, 1e9, 0, 0, 0, 0);
+		BustimeMetrics metrics = new BustimeMetrics();
+		BustimeAPIRequest requestService = new BustimeAPIRequest(restTemplate, JSON_PATH_CONFIG,
+				new BustimeResponseParser(OBJECT_MAPPER), quotaGovernor, new ApiKeyPool("", Selection.ROUND_ROBIN),
+				metrics, new UpstreamGuard(Integer.MAX_VALUE, 0, Integer.MAX_VALUE, 0),
+				new RequestHedger(quotaGovernor, metrics, executor, 0, 0), executor);
+		requestService.setKey("benchmark");
+		return requestService;
+	}
+
+	static ExecutorService newExecutor() {
+		return Executors.newSingleThreadExecutor();
+	}
+
+	/**
+	 * Answers each CTA request type with its sample response.
+	 */
+	private static class SampleTransport implements ClientHttpRequestFactory {
+
+		private final byte[] routes = sample("routes.json").getBytes(StandardCharsets.UTF_8);
+		private final byte[] directions = sample("directions.json").getBytes(StandardCharsets.UTF_8);
+		private final byte[] stops = sample("stops.json").getBytes(StandardCharsets.UTF_8);
+		private final byte[] predictions = sample("predictions.json").getBytes(StandardCharsets.UTF_8);
+
+		@Override
+		public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+			String path = uri.getPath();
+			byte[] body = path.endsWith("getroutes") ? routes
+					: path.endsWith("getdirections") ? directions : path.endsWith("getstops") ? stops : predictions;
+
+			MockClientHttpResponse response = new MockClientHttpResponse(body, HttpStatus.OK);
+			response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+			MockClientHttpRequest request = new MockClientHttpRequest(httpMethod, uri);
+			request.setResponse(response);
+			return request;
+		}
+	}
+}
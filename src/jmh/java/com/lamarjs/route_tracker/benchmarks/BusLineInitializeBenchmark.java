@@ -0,0 +1,56 @@
+package com.lamarjs.route_tracker.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.services.BustimeAPIRequest;
+
+/**
+ * A full {@link BusLine#initialize(BustimeAPIRequest)}: one directions request
+ * and one stops request per direction, through the real client code (URL
+ * building, quota, RestTemplate, parsing) over an in memory transport.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BusLineInitializeBenchmark {
+
+	ExecutorService executor;
+	BustimeAPIRequest requestService;
+
+	@Setup
+	public void setUp() {
+		executor = BenchmarkSupport.newExecutor();
+		requestService = BenchmarkSupport.stubbedRequestService(executor);
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public BusLine initialize() throws BusTimeErrorReceivedException, IOException {
+		BusLine line = new BusLine("X9", "Ashland Express", "#cc3300");
+		line.initialize(requestService);
+		return line;
+	}
+}
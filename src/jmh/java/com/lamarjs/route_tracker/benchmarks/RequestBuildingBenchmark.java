@@ -0,0 +1,83 @@
+package com.lamarjs.route_tracker.benchmarks;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lamarjs.route_tracker.services.BustimeAPIRequest;
+import com.lamarjs.route_tracker.services.BustimeAPIRequest.Parameter;
+import com.lamarjs.route_tracker.services.BustimeAPIRequest.RequestType;
+
+/**
+ * Request URL building and error extraction in {@link BustimeAPIRequest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBuildingBenchmark {
+
+	ExecutorService executor;
+	BustimeAPIRequest requestService;
+	Map<Parameter, String> stopsParameters;
+	String stopsParameterString;
+	Object errorBody;
+	Object routesBody;
+
+	@Setup
+	public void setUp() {
+		executor = BenchmarkSupport.newExecutor();
+		requestService = BenchmarkSupport.stubbedRequestService(executor);
+
+		stopsParameters = new EnumMap<>(Parameter.class);
+		stopsParameters.put(Parameter.ROUTE, "X9");
+		stopsParameters.put(Parameter.DIRECTION, "Southbound");
+		stopsParameterString = Parameter.ROUTE.format() + "X9" + Parameter.DIRECTION.format() + "Southbound";
+
+		errorBody = BenchmarkSupport.JSON_PATH_CONFIG.jsonProvider()
+				.parse(BenchmarkSupport.sample("error_bad_param.json"));
+		routesBody = BenchmarkSupport.JSON_PATH_CONFIG.jsonProvider().parse(BenchmarkSupport.sample("routes.json"));
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public URL buildRequestURL_map() throws MalformedURLException {
+		return requestService.buildRequestURL(RequestType.STOPS, stopsParameters, true);
+	}
+
+	@Benchmark
+	public URL buildRequestURL_string() throws MalformedURLException {
+		return requestService.buildRequestURL(RequestType.STOPS, stopsParameterString, true);
+	}
+
+	@Benchmark
+	public String getBustimeError_present() {
+		return requestService.getBustimeError(errorBody);
+	}
+
+	@Benchmark
+	public String getBustimeError_absent() {
+		return requestService.getBustimeError(routesBody);
+	}
+}
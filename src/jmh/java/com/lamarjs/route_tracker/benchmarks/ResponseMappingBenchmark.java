@@ -0,0 +1,95 @@
+package com.lamarjs.route_tracker.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.TypeRef;
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Prediction;
+import com.lamarjs.route_tracker.models.Stop;
+import com.lamarjs.route_tracker.services.BustimeResponseParser;
+import com.lamarjs.route_tracker.services.ParsedResponse;
+
+/**
+ * Mapping of the sample routes, stops and predictions responses into model
+ * objects, both through JsonPath {@link TypeRef} mapping and through the
+ * streaming {@link BustimeResponseParser} that the client uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseMappingBenchmark {
+
+	String routes;
+	String stops;
+	String predictions;
+	byte[] routesBytes;
+	byte[] stopsBytes;
+	byte[] predictionsBytes;
+	BustimeResponseParser parser;
+
+	@Setup
+	public void setUp() {
+		routes = BenchmarkSupport.sample("routes.json");
+		stops = BenchmarkSupport.sample("stops.json");
+		predictions = BenchmarkSupport.sample("predictions.json");
+		routesBytes = routes.getBytes(StandardCharsets.UTF_8);
+		stopsBytes = stops.getBytes(StandardCharsets.UTF_8);
+		predictionsBytes = predictions.getBytes(StandardCharsets.UTF_8);
+		parser = new BustimeResponseParser(BenchmarkSupport.OBJECT_MAPPER);
+	}
+
+	@Benchmark
+	public List<BusLine> typeRef_routes() {
+		return JsonPath.using(BenchmarkSupport.JSON_PATH_CONFIG).parse(routes).read("$.bustime-response.routes",
+				new TypeRef<List<BusLine>>() {
+				});
+	}
+
+	@Benchmark
+	public List<Stop> typeRef_stops() {
+		return JsonPath.using(BenchmarkSupport.JSON_PATH_CONFIG).parse(stops).read("$.bustime-response.stops",
+				new TypeRef<List<Stop>>() {
+				});
+	}
+
+	@Benchmark
+	public List<Prediction> typeRef_predictions() {
+		return JsonPath.using(BenchmarkSupport.JSON_PATH_CONFIG).parse(predictions).read("$.bustime-response.prd",
+				new TypeRef<List<Prediction>>() {
+				});
+	}
+
+	@Benchmark
+	public ParsedResponse<BusLine> streaming_routes() throws IOException {
+		return parser.parse(new ByteArrayInputStream(routesBytes), "routes", BusLine.class);
+	}
+
+	@Benchmark
+	public ParsedResponse<Stop> streaming_stops() throws IOException {
+		return parser.parse(new ByteArrayInputStream(stopsBytes), "stops", Stop.class);
+	}
+
+	@Benchmark
+	public ParsedResponse<Prediction> streaming_predictions() throws IOException {
+		return parser.parse(new ByteArrayInputStream(predictionsBytes), "prd", Prediction.class);
+	}
+}
@@ -0,0 +1,78 @@
+package com.lamarjs.route_tracker.controllers;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import com.lamarjs.route_tracker.models.BulkPredictionRequest;
+import com.lamarjs.route_tracker.models.BulkPredictions;
+import com.lamarjs.route_tracker.services.BulkPredictionService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Predictions for a whole dashboard's worth of stops in one round trip.
+ *
+ * @see BulkPredictionService
+ */
+@Slf4j
+@RestController
+public class BulkPredictionController {
+	BulkPredictionService bulkPredictionService;
+	long deadline;
+
+	@Autowired
+	public BulkPredictionController(BulkPredictionService bulkPredictionService,
+			@Value("${bustime.request.deadline-ms:5000}") long deadline) {
+		this.bulkPredictionService = bulkPredictionService;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Answers asynchronously like "/getpredictions". Chunks that fail are
+	 * listed in the response rather than failing the request; chunks still
+	 * unanswered at bustime.request.deadline-ms are reported as failed.
+	 * Answers 400 for an empty request, one with more than
+	 * bustime.predictions.bulk-max-stops stops, or one whose top is below 1 or
+	 * above bustime.predictions.bulk-max-top, or with a stop id that is not a
+	 * number.
+	 */
+	@RequestMapping(value = "/predictions/batch", method = RequestMethod.POST)
+	public DeferredResult<ResponseEntity<BulkPredictions>> getPredictions(
+			@RequestBody BulkPredictionRequest request) {
+
+		// Chunks give up at the deadline and are reported as failed, so the
+		// 504 is only a backstop.
+		DeferredResult<ResponseEntity<BulkPredictions>> result = new DeferredResult<>(deadline + 1000,
+				ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build());
+
+		List<Integer> stpids;
+		try {
+			stpids = BulkPredictionService.normalize(request.getStpids());
+		} catch (IllegalArgumentException e) {
+			log.warn("[getPredictions()] - Rejecting bulk predictions request: {}", e.getMessage());
+			result.setResult(ResponseEntity.badRequest().build());
+			return result;
+		}
+		if (stpids.isEmpty() || stpids.size() > bulkPredictionService.getMaxStops() || request.getTop() < 1
+				|| request.getTop() > bulkPredictionService.getMaxTop()) {
+			log.warn("[getPredictions()] - Rejecting bulk predictions request for {} stops, top {}", stpids.size(),
+					request.getTop());
+			result.setResult(ResponseEntity.badRequest().build());
+			return result;
+		}
+
+		bulkPredictionService.getPredictions(stpids, request.getTop(), System.currentTimeMillis() + deadline)
+				.thenAccept(predictions -> result.setResult(ResponseEntity.ok(predictions)));
+
+		return result;
+	}
+}
@@ -0,0 +1,80 @@
+package com.lamarjs.route_tracker.controllers;
+
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.RestClientException;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.exceptions.QuotaExceededException;
+import com.lamarjs.route_tracker.exceptions.UpstreamUnavailableException;
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Stop;
+import com.lamarjs.route_tracker.services.BusLineSliceService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Per route alternatives to /getbuslines, so that a client only pays for the
+ * routes it asks for. An unknown route or direction is answered with 404. An
+ * error message from the CTA API is answered with 502, and a shed or
+ * unavailable upstream with 503.
+ */
+@Slf4j
+@RestController
+public class BusLineController {
+	BusLineSliceService sliceService;
+
+	@Autowired
+	public BusLineController(BusLineSliceService sliceService) {
+		this.sliceService = sliceService;
+	}
+
+	@RequestMapping(value = "/buslines/{rt}", method = RequestMethod.GET)
+	public ResponseEntity<BusLine> getBusLine(@PathVariable("rt") String rt) {
+		try {
+			BusLine line = sliceService.getBusLine(rt);
+			return line == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(line);
+		} catch (BusTimeErrorReceivedException e) {
+			log.error("[getBusLine()] - Could not initialize route: " + rt + ". " + e);
+			return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+		} catch (MalformedURLException | URISyntaxException e) {
+			log.error("[getBusLine()] - Could not initialize route: " + rt + ". " + e);
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+		} catch (RestClientException e) {
+			log.error("[getBusLine()] - Could not initialize route: " + rt + ". " + e);
+			return upstreamFailure(e);
+		}
+	}
+
+	@RequestMapping(value = "/buslines/{rt}/{dir}/stops", method = RequestMethod.GET)
+	public ResponseEntity<List<Stop>> getStops(@PathVariable("rt") String rt, @PathVariable("dir") String dir) {
+		try {
+			List<Stop> stops = sliceService.getStops(rt, dir);
+			return stops == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(stops);
+		} catch (BusTimeErrorReceivedException e) {
+			log.error("[getStops()] - Could not initialize stops for route: " + rt + " " + dir + ". " + e);
+			return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+		} catch (MalformedURLException | URISyntaxException e) {
+			log.error("[getStops()] - Could not initialize stops for route: " + rt + " " + dir + ". " + e);
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+		} catch (RestClientException e) {
+			log.error("[getStops()] - Could not initialize stops for route: " + rt + " " + dir + ". " + e);
+			return upstreamFailure(e);
+		}
+	}
+
+	private static <T> ResponseEntity<T> upstreamFailure(RestClientException e) {
+		HttpStatus status = e instanceof QuotaExceededException || e instanceof UpstreamUnavailableException
+				? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.BAD_GATEWAY;
+		return ResponseEntity.status(status).build();
+	}
+}
@@ -1,81 +1,170 @@
 package com.lamarjs.route_tracker.controllers;
 
-import java.io.IOException;
 import java.net.MalformedURLException;
-import java.net.URISyntaxException;
-import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestClientException;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
-import com.lamarjs.route_tracker.models.BusLine;
-import com.lamarjs.route_tracker.models.Prediction;
-import com.lamarjs.route_tracker.services.BustimeAPIRequest;
+import com.lamarjs.route_tracker.exceptions.QuotaExceededException;
+import com.lamarjs.route_tracker.exceptions.UpstreamUnavailableException;
+import com.lamarjs.route_tracker.models.BustimeError;
+import com.lamarjs.route_tracker.services.NetworkCacheService;
+import com.lamarjs.route_tracker.services.NetworkPayload;
+import com.lamarjs.route_tracker.services.NetworkPayloadService;
+import com.lamarjs.route_tracker.services.PredictionCacheService;
+import com.lamarjs.route_tracker.services.PredictionKey;
 
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @RestController
 public class BustimeRequestController {
-	BustimeAPIRequest requestService;
+
+	/**
+	 * Response header listing the route codes of BusLines that could not be
+	 * fully initialized.
+	 */
+	public static final String FAILED_ROUTES_HEADER = "X-Failed-Routes";
+
+	/**
+	 * Warning header value (RFC 7234) sent along with an Age header when the
+	 * CTA API could not be reached and older data is served instead.
+	 */
+	public static final String STALE_WARNING = "110 - \"Response is Stale\"";
+
+	NetworkCacheService networkCache;
+	NetworkPayloadService payloadService;
+	PredictionCacheService predictionCache;
+	long deadline;
 
 	@Autowired
-	public BustimeRequestController(BustimeAPIRequest requestService) {
-		this.requestService = requestService;
+	public BustimeRequestController(NetworkCacheService networkCache, NetworkPayloadService payloadService,
+			PredictionCacheService predictionCache, @Value("${bustime.request.deadline-ms:5000}") long deadline) {
+		this.networkCache = networkCache;
+		this.payloadService = payloadService;
+		this.predictionCache = predictionCache;
+		this.deadline = deadline;
 	}
 
+	/**
+	 * Writes the bus lines serialized once per network snapshot, gzip'd when
+	 * the client accepts it. Answers 304 when If-None-Match names the current
+	 * payload.
+	 */
 	@RequestMapping(value = "/getbuslines", method = RequestMethod.GET)
-	public List<BusLine> getBusLines() {
+	public ResponseEntity<byte[]> getBusLines(
+			@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+			@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
 
-		List<BusLine> busLines = null;
+		Optional<NetworkPayload> payload = payloadService.getPayload();
 
-		try {
-			busLines = requestService.requestRoutes();
-
-		} catch (RestClientException | MalformedURLException | BusTimeErrorReceivedException | URISyntaxException e) {
-			// TODO Auto-generated catch block
-			log.error("[getBusLines()] - Exception thrown on requestRoutes() call: ", e);
-			e.printStackTrace();
+		if (!payload.isPresent()) {
+			log.warn("[getBusLines()] - Network has not been loaded yet.");
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
 		}
 
-		for (BusLine line : busLines) {
-			try {
-				line.initialize(requestService);
-			} catch (BusTimeErrorReceivedException | IOException e) {
-				// TODO Auto-generated catch block
-				log.error("[getBusLines()] - Exception thrown on intialize() call for BusLine: " + line + ". " + e);
-				e.printStackTrace();
-			}
+		boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+		String etag = gzip ? payload.get().getGzipEtag() : payload.get().getEtag();
+
+		if (payload.get().matches(ifNoneMatch)) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).header(HttpHeaders.VARY,
+					HttpHeaders.ACCEPT_ENCODING).build();
 		}
-		return busLines;
 
-		// TODO: Write tests for me! Return error message when appropriate.
+		// Routes that could not be fully initialized are still returned, and
+		// are listed in a header so that clients can tell which are incomplete.
+		ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8)
+				.eTag(etag).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (!payload.get().getFailures().isEmpty()) {
+			response.header(FAILED_ROUTES_HEADER, String.join(",", payload.get().getFailures().keySet()));
+		}
+		if (networkCache.isStale()) {
+			markStale(response, payload.get().getSnapshot().getAge());
+		}
+		if (gzip) {
+			return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.get().getGzip());
+		}
+		return response.body(payload.get().getJson());
 	}
 
+	/**
+	 * Answers asynchronously: the servlet thread is released while the
+	 * predictions are fetched, and the request fails with 504 if they are not
+	 * ready within bustime.request.deadline-ms. The deadline is passed on, so
+	 * that no upstream work is started for the request after it has passed.
+	 * Answers 400 if a stop id is not a number, and 502 with the CTA error
+	 * message if the CTA API answered with an error instead of predictions.
+	 */
 	@RequestMapping(value = "/getpredictions", method = RequestMethod.GET)
-	public List<Prediction> getPredictions(@RequestParam(value = "stpids", required = true) String stpids,
+	public DeferredResult<ResponseEntity<?>> getPredictions(
+			@RequestParam(value = "stpids", required = true) String stpids,
 			@RequestParam(value = "rts", required = false, defaultValue = "") String rts,
 			@RequestParam(value = "top", required = false, defaultValue = "5") int top) {
 
-		List<Prediction> predictions = null;
+		DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(deadline,
+				ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build());
 
 		try {
-			predictions = requestService.requestPredictions(stpids, rts, top);
-		} catch (MalformedURLException | BusTimeErrorReceivedException e) {
-			// TODO Auto-generated catch block
-			log.error("[getPredictions()] - Exception thrown on requestPredictions() call for stops: " + stpids + ". "
-					+ e);
-			e.printStackTrace();
+			PredictionKey.parseStpids(stpids);
+		} catch (IllegalArgumentException e) {
+			log.warn("[getPredictions()] - Rejecting predictions request: {}", e.getMessage());
+			result.setResult(ResponseEntity.badRequest().build());
+			return result;
 		}
 
-		return predictions;
+		long expiresAt = System.currentTimeMillis() + deadline;
+		predictionCache.getPredictionResultAsync(stpids, rts, top, expiresAt).whenComplete((predictions, e) -> {
+			if (e == null) {
+				ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+				if (predictions.isStale()) {
+					markStale(response, predictions.getAge());
+				}
+				result.setResult(response.body(predictions.getPredictions()));
+				return;
+			}
 
-		// TODO: Write tests for me! Return error message when appropriate.
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			log.error("[getPredictions()] - Exception thrown on getPredictionResultAsync() call for stops: " + stpids
+					+ ". " + cause);
+
+			if (cause instanceof BusTimeErrorReceivedException) {
+				BustimeError error = new BustimeError();
+				error.setMsg(cause.getMessage());
+				result.setResult(ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(error));
+			} else if (cause instanceof MalformedURLException) {
+				result.setResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+			} else if (cause instanceof QuotaExceededException) {
+				result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+			} else if (cause instanceof UpstreamUnavailableException) {
+				result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+						.header(HttpHeaders.RETRY_AFTER, "30").build());
+			} else if (cause instanceof TimeoutException) {
+				result.setResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build());
+			} else {
+				result.setResult(ResponseEntity.status(HttpStatus.BAD_GATEWAY).build());
+			}
+		});
+
+		return result;
 	}
 
+	private static void markStale(ResponseEntity.HeadersBuilder<?> response, long ageMillis) {
+		response.header(HttpHeaders.AGE, Long.toString(TimeUnit.MILLISECONDS.toSeconds(ageMillis)));
+		response.header(HttpHeaders.WARNING, STALE_WARNING);
+	}
 }
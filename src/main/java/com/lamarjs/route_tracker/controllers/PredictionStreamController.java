@@ -0,0 +1,45 @@
+package com.lamarjs.route_tracker.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.lamarjs.route_tracker.services.PredictionKey;
+import com.lamarjs.route_tracker.services.PredictionStreamService;
+
+/**
+ * Streams predictions to clients as Server-Sent Events instead of having them
+ * poll "/getpredictions". Takes the same parameters as "/getpredictions".
+ * 
+ * @see PredictionStreamService
+ */
+@RestController
+public class PredictionStreamController {
+	PredictionStreamService streamService;
+
+	@Autowired
+	public PredictionStreamController(PredictionStreamService streamService) {
+		this.streamService = streamService;
+	}
+
+	/**
+	 * Answers 400 if a stop id is not a number.
+	 */
+	@RequestMapping(value = "/predictions/stream", method = RequestMethod.GET, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> streamPredictions(@RequestParam(value = "stpids", required = true) String stpids,
+			@RequestParam(value = "rts", required = false, defaultValue = "") String rts,
+			@RequestParam(value = "top", required = false, defaultValue = "5") int top) {
+
+		try {
+			PredictionKey.parseStpids(stpids);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+		return ResponseEntity.ok(streamService.subscribe(stpids, rts, top));
+	}
+}
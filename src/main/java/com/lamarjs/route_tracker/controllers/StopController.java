@@ -0,0 +1,81 @@
+package com.lamarjs.route_tracker.controllers;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.lamarjs.route_tracker.models.NearbyStop;
+import com.lamarjs.route_tracker.models.RouteDirection;
+import com.lamarjs.route_tracker.models.Stop;
+import com.lamarjs.route_tracker.services.StopDirectoryIndex;
+import com.lamarjs.route_tracker.services.StopSpatialIndex;
+
+/**
+ * Stop lookups answered from indexes over the cached network, without calling
+ * the CTA API. A limit below 1, a negative radius, or a latitude outside
+ * [-90, 90] or longitude outside [-180, 180] is answered with 400.
+ */
+@RestController
+public class StopController {
+	StopSpatialIndex spatialIndex;
+	StopDirectoryIndex directoryIndex;
+
+	@Autowired
+	public StopController(StopSpatialIndex spatialIndex, StopDirectoryIndex directoryIndex) {
+		this.spatialIndex = spatialIndex;
+		this.directoryIndex = directoryIndex;
+	}
+
+	@RequestMapping(value = "/stops/nearby", method = RequestMethod.GET)
+	public ResponseEntity<List<NearbyStop>> getNearbyStops(@RequestParam(value = "lat", required = true) double lat,
+			@RequestParam(value = "lon", required = true) double lon,
+			@RequestParam(value = "radius", required = false, defaultValue = "400") double radius,
+			@RequestParam(value = "limit", required = false, defaultValue = "10") int limit) {
+
+		if (limit < 1 || !(radius >= 0) || !(lat >= -90 && lat <= 90) || !(lon >= -180 && lon <= 180)) {
+			return ResponseEntity.badRequest().build();
+		}
+		if (!spatialIndex.isReady()) {
+			return notReady();
+		}
+		return ResponseEntity.ok(spatialIndex.nearby(lat, lon, radius, limit));
+	}
+
+	@RequestMapping(value = "/stops/{stpid}/routes", method = RequestMethod.GET)
+	public ResponseEntity<List<RouteDirection>> getRoutesForStop(@PathVariable("stpid") int stpid) {
+
+		if (!directoryIndex.isReady()) {
+			return notReady();
+		}
+		List<RouteDirection> routes = directoryIndex.getRoutesForStop(stpid);
+		if (routes.isEmpty()) {
+			return ResponseEntity.notFound().build();
+		}
+		return ResponseEntity.ok(routes);
+	}
+
+	@RequestMapping(value = "/stops/search", method = RequestMethod.GET)
+	public ResponseEntity<List<Stop>> searchStops(@RequestParam(value = "prefix", required = true) String prefix,
+			@RequestParam(value = "limit", required = false, defaultValue = "20") int limit) {
+
+		if (limit < 1) {
+			return ResponseEntity.badRequest().build();
+		}
+		if (!directoryIndex.isReady()) {
+			return notReady();
+		}
+		return ResponseEntity.ok(directoryIndex.searchByName(prefix, limit));
+	}
+
+	private static <T> ResponseEntity<T> notReady() {
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
+	}
+}
@@ -0,0 +1,19 @@
+package com.lamarjs.route_tracker.exceptions;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Thrown instead of sending a request to the CTA API when the request would
+ * exceed the API key's quota, or could not get a share of it in time.
+ */
+public class QuotaExceededException extends RestClientException {
+
+	/**
+	 * Generated serialVersionUID
+	 */
+	private static final long serialVersionUID = 4186541950412776871L;
+
+	public QuotaExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,20 @@
+package com.lamarjs.route_tracker.exceptions;
+
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Thrown instead of sending a request to the CTA API while the API is
+ * considered down, or when too many requests of the same type are already
+ * waiting on it.
+ */
+public class UpstreamUnavailableException extends RestClientException {
+
+	/**
+	 * Generated serialVersionUID
+	 */
+	private static final long serialVersionUID = -2735120958811960527L;
+
+	public UpstreamUnavailableException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,96 @@
+package com.lamarjs.route_tracker.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import com.lamarjs.route_tracker.services.BustimeAPIRequest.RequestType;
+
+/**
+ * Collects timings and counts for calls to the CTA API and for this service's
+ * own endpoints, and publishes them through the actuator metrics endpoint.
+ * <ul>
+ * <li>bustime.upstream.[type].latency - milliseconds until the CTA API
+ * responded</li>
+ * <li>bustime.upstream.[type].parse - milliseconds spent reading and parsing
+ * the response body</li>
+ * <li>bustime.upstream.[type].bytes - response body size</li>
+ * <li>bustime.upstream.[type].errors.[message] - error messages returned by
+ * the CTA API, and transport failures</li>
+ * <li>bustime.endpoint.[path].upstream - milliseconds spent in the handler,
+ * i.e. waiting on caches and the CTA API</li>
+ * <li>bustime.endpoint.[path].serialization - milliseconds spent writing the
+ * response body</li>
+ * </ul>
+ * Each histogram is published as its count, mean, max, p50, p99 and p999.
+ * 
+ * @author Lamar J. Smith
+ */
+@Component
+public class BustimeMetrics implements PublicMetrics {
+
+	private static final String UPSTREAM = "bustime.upstream.";
+	private static final String ENDPOINT = "bustime.endpoint.";
+
+	private final Map<String, RollingHistogram> histograms = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+	public void recordUpstream(RequestType type, long latency, long parseTime, long bytes) {
+		histogram(UPSTREAM + type.format() + ".latency").record(latency);
+		histogram(UPSTREAM + type.format() + ".parse").record(parseTime);
+		histogram(UPSTREAM + type.format() + ".bytes").record(bytes);
+	}
+
+	public void recordUpstreamError(RequestType type, String message) {
+		counter(UPSTREAM + type.format() + ".errors." + sanitize(message)).increment();
+	}
+
+	public void recordEndpoint(String path, long upstream, long serialization) {
+		String name = ENDPOINT + sanitize(path);
+		histogram(name + ".upstream").record(upstream);
+		histogram(name + ".serialization").record(serialization);
+	}
+
+	/**
+	 * @return The upstream latency histogram for the given request type.
+	 */
+	public RollingHistogram getUpstreamLatency(RequestType type) {
+		return histogram(UPSTREAM + type.format() + ".latency");
+	}
+
+	public RollingHistogram histogram(String name) {
+		return histograms.computeIfAbsent(name, key -> new RollingHistogram());
+	}
+
+	public LongAdder counter(String name) {
+		return counters.computeIfAbsent(name, key -> new LongAdder());
+	}
+
+	private String sanitize(String name) {
+		String sanitized = String.valueOf(name).toLowerCase().replaceAll("[^a-z0-9]+", "_")
+				.replaceAll("^_+|_+$", "");
+		return sanitized.isEmpty() ? "root" : sanitized;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		List<Metric<?>> metrics = new ArrayList<>();
+		histograms.forEach((name, histogram) -> {
+			metrics.add(new Metric<>(name + ".count", histogram.getCount()));
+			metrics.add(new Metric<>(name + ".mean", histogram.getMean()));
+			metrics.add(new Metric<>(name + ".max", histogram.getMax()));
+			metrics.add(new Metric<>(name + ".p50", histogram.getPercentile(50)));
+			metrics.add(new Metric<>(name + ".p99", histogram.getPercentile(99)));
+			metrics.add(new Metric<>(name + ".p999", histogram.getPercentile(99.9)));
+		});
+		counters.forEach((name, counter) -> metrics.add(new Metric<>(name, counter.sum())));
+		return metrics;
+	}
+}
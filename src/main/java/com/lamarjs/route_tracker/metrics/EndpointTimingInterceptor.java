@@ -0,0 +1,81 @@
+package com.lamarjs.route_tracker.metrics;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Times each request to a controller endpoint in two parts: the time from the
+ * handler being invoked until its response body is ready to be written (the
+ * upstream wait), and the time spent writing the body (serialization). The
+ * split point is {@link ResponseBodyAdvice#beforeBodyWrite}, which runs right
+ * before the message converter serializes the body.
+ * 
+ * @author Lamar J. Smith
+ */
+@ControllerAdvice
+public class EndpointTimingInterceptor extends HandlerInterceptorAdapter implements ResponseBodyAdvice<Object> {
+
+	private static final String HANDLER_START = EndpointTimingInterceptor.class.getName() + ".handlerStart";
+	private static final String BODY_START = EndpointTimingInterceptor.class.getName() + ".bodyStart";
+
+	private final BustimeMetrics metrics;
+
+	@Autowired
+	public EndpointTimingInterceptor(BustimeMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		// Async requests are dispatched a second time once their result is
+		// ready, keep the time of the first dispatch.
+		if (request.getAttribute(HANDLER_START) == null) {
+			request.setAttribute(HANDLER_START, System.nanoTime());
+		}
+		return true;
+	}
+
+	@Override
+	public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+		return true;
+	}
+
+	@Override
+	public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+			Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request,
+			ServerHttpResponse response) {
+		if (request instanceof ServletServerHttpRequest) {
+			((ServletServerHttpRequest) request).getServletRequest().setAttribute(BODY_START, System.nanoTime());
+		}
+		return body;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		Long handlerStart = (Long) request.getAttribute(HANDLER_START);
+		Object path = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		if (handlerStart == null || path == null) {
+			return;
+		}
+
+		long end = System.nanoTime();
+		Long bodyStart = (Long) request.getAttribute(BODY_START);
+		if (bodyStart == null) {
+			bodyStart = end;
+		}
+		metrics.recordEndpoint(path.toString(), (bodyStart - handlerStart) / 1000000, (end - bodyStart) / 1000000);
+	}
+}
@@ -0,0 +1,25 @@
+package com.lamarjs.route_tracker.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Registers {@link EndpointTimingInterceptor} for every endpoint.
+ */
+@Configuration
+public class MetricsWebConfiguration extends WebMvcConfigurerAdapter {
+
+	private final EndpointTimingInterceptor timingInterceptor;
+
+	@Autowired
+	public MetricsWebConfiguration(EndpointTimingInterceptor timingInterceptor) {
+		this.timingInterceptor = timingInterceptor;
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(timingInterceptor);
+	}
+}
@@ -0,0 +1,68 @@
+package com.lamarjs.route_tracker.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Summarizes a stream of recorded values. The count, total and max cover
+ * every value ever recorded, while percentiles are computed over the most
+ * recent {@link RollingHistogram#WINDOW} values so that they follow changes in
+ * behavior instead of averaging over the whole uptime.
+ * 
+ * @author Lamar J. Smith
+ */
+public class RollingHistogram {
+
+	/**
+	 * The number of most recent values that percentiles are computed from.
+	 */
+	public static final int WINDOW = 1024;
+
+	private final long[] window = new long[WINDOW];
+	private int next;
+	private long count;
+	private long total;
+	private long max;
+
+	public synchronized void record(long value) {
+		window[next] = value;
+		next = (next + 1) % WINDOW;
+		count++;
+		total += value;
+		max = Math.max(max, value);
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	public synchronized long getTotal() {
+		return total;
+	}
+
+	public synchronized long getMax() {
+		return max;
+	}
+
+	public synchronized double getMean() {
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	/**
+	 * @param percentile
+	 *            Between 0 and 100, e.g. 99 for the 99th percentile.
+	 * @return The given percentile of the most recent values, or 0 if nothing
+	 *         has been recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long[] recent;
+		synchronized (this) {
+			recent = Arrays.copyOf(window, (int) Math.min(count, WINDOW));
+		}
+		if (recent.length == 0) {
+			return 0;
+		}
+		Arrays.sort(recent);
+		int index = (int) Math.ceil(percentile / 100 * recent.length) - 1;
+		return recent[Math.max(0, Math.min(recent.length - 1, index))];
+	}
+}
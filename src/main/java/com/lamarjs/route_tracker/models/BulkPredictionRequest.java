@@ -0,0 +1,16 @@
+package com.lamarjs.route_tracker.models;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * The body of a "/predictions/batch" request: any number of stop ids, and the
+ * most predictions to return for each stop.
+ */
+@Data
+public class BulkPredictionRequest {
+
+	private List<String> stpids;
+	private int top = 5;
+}
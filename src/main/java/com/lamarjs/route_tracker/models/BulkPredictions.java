@@ -0,0 +1,41 @@
+package com.lamarjs.route_tracker.models;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * The answer to a "/predictions/batch" request. Predictions are grouped by
+ * stop id, in the order the stops were requested. A stop the CTA API returned
+ * an error for (e.g. "No arrival times") is listed in stopErrors instead, and
+ * the stops of a chunk whose upstream request failed altogether are listed in
+ * failedChunks.
+ */
+@Data
+public class BulkPredictions {
+
+	private Map<String, List<Prediction>> predictions = new LinkedHashMap<>();
+	private Map<String, String> stopErrors = new LinkedHashMap<>();
+	private List<FailedChunk> failedChunks = new ArrayList<>();
+
+	/**
+	 * The stops sent together in one upstream request that failed, and why.
+	 */
+	@Data
+	public static class FailedChunk {
+
+		private List<String> stpids;
+		private String error;
+
+		public FailedChunk() {
+		}
+
+		public FailedChunk(List<String> stpids, String error) {
+			this.stpids = stpids;
+			this.error = error;
+		}
+	}
+}
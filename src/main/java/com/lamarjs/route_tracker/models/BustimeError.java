@@ -0,0 +1,19 @@
+package com.lamarjs.route_tracker.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import lombok.Data;
+
+/**
+ * An entry from the "error" array of a CTA API response. Errors that concern
+ * a single route or stop carry its rt or stpid; errors that concern the whole
+ * request (e.g. an invalid key) carry only a msg.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Data
+public class BustimeError {
+
+	private String msg; // Ex: "No arrival times"
+	private String rt; // Ex: "1000"
+	private String stpid; // Ex: "1584"
+}
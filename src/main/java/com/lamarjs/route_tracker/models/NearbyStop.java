@@ -0,0 +1,21 @@
+package com.lamarjs.route_tracker.models;
+
+import lombok.Data;
+
+/**
+ * A {@link Stop} found near a location, along with how far away it is.
+ */
+@Data
+public class NearbyStop {
+
+	private Stop stop;
+	private double distance; // meters from the searched location
+
+	public NearbyStop() {
+	};
+
+	public NearbyStop(Stop stop, double distance) {
+		this.stop = stop;
+		this.distance = distance;
+	}
+}
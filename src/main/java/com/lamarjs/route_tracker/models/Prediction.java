@@ -1,5 +1,12 @@
 package com.lamarjs.route_tracker.models;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import lombok.Data;
@@ -7,7 +14,30 @@ import lombok.Data;
 @JsonIgnoreProperties(ignoreUnknown = true)
 @Data
 public class Prediction {
-	String tmstmp; // Ex: "20170314 11:25" TODO: Make datetime
+
+	/**
+	 * The zone the CTA API reports its local times in.
+	 */
+	public static final ZoneId BUSTIME_ZONE = ZoneId.of("America/Chicago");
+
+	/**
+	 * The format of tmstmp and prdtm. DateTimeFormatter is immutable, so one
+	 * instance is shared by every thread.
+	 */
+	public static final DateTimeFormatter BUSTIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd HH:mm");
+
+	/**
+	 * The countdown the CTA API reports for an arrival less than two minutes
+	 * away.
+	 */
+	public static final String DUE = "DUE";
+
+	/**
+	 * The countdown the CTA API reports for a delayed bus.
+	 */
+	public static final String DELAYED = "DLY";
+
+	String tmstmp; // Ex: "20170314 11:25"
 	String typ; // Ex: "A"
 	String stpnm; // Ex: "Michigan \u0026 Balbo"
 	int stpid; // Ex: "1584"
@@ -23,6 +53,81 @@ public class Prediction {
 	String prdctdn; // Ex: "7"
 	String zone; // Ex: ""
 
+	@JsonIgnore
+	long tmstmpEpoch; // tmstmp as epoch millis, 0 if it could not be parsed
+	@JsonIgnore
+	long prdtmEpoch; // prdtm as epoch millis, 0 if it could not be parsed
+
+	public void setTmstmp(String tmstmp) {
+		this.tmstmp = tmstmp;
+		this.tmstmpEpoch = parseEpoch(tmstmp);
+	}
+
+	public void setPrdtm(String prdtm) {
+		this.prdtm = prdtm;
+		this.prdtmEpoch = parseEpoch(prdtm);
+	}
+
+	/**
+	 * Parses a CTA API local time such as "20170314 11:32".
+	 * 
+	 * @return The time as epoch millis, or 0 if it could not be parsed.
+	 */
+	public static long parseEpoch(String bustimeTime) {
+		if (bustimeTime == null) {
+			return 0;
+		}
+		try {
+			return LocalDateTime.parse(bustimeTime, BUSTIME_FORMAT).atZone(BUSTIME_ZONE).toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns a copy of this prediction with prdctdn recomputed from prdtm for
+	 * the given time, so that a cached prediction keeps counting down. Delayed
+	 * predictions and predictions without a parsable prdtm keep their
+	 * countdown.
+	 * 
+	 * @param now
+	 *            The current time in epoch millis.
+	 */
+	public Prediction withCountdownAt(long now) {
+		Prediction copy = new Prediction();
+		copy.tmstmp = tmstmp;
+		copy.tmstmpEpoch = tmstmpEpoch;
+		copy.typ = typ;
+		copy.stpnm = stpnm;
+		copy.stpid = stpid;
+		copy.vid = vid;
+		copy.dstp = dstp;
+		copy.rt = rt;
+		copy.rtdir = rtdir;
+		copy.des = des;
+		copy.prdtm = prdtm;
+		copy.prdtmEpoch = prdtmEpoch;
+		copy.tablockid = tablockid;
+		copy.tatripid = tatripid;
+		copy.dly = dly;
+		copy.zone = zone;
+		copy.prdctdn = prdctdn;
+
+		if (!dly && !DELAYED.equals(prdctdn) && prdtmEpoch > 0) {
+			long minutes = TimeUnit.MILLISECONDS.toMinutes(prdtmEpoch - now);
+			copy.prdctdn = minutes < 2 ? DUE : Long.toString(minutes);
+		}
+		return copy;
+	}
+
+	/**
+	 * @return true if prdtm is known and is more than a minute before the
+	 *         given time, i.e. the bus has most likely come and gone.
+	 */
+	public boolean isDepartedAt(long now) {
+		return prdtmEpoch > 0 && now - prdtmEpoch > TimeUnit.MINUTES.toMillis(1);
+	}
+
 	@Override
 	public String toString() {
 		return prdctdn + "m";
@@ -0,0 +1,22 @@
+package com.lamarjs.route_tracker.models;
+
+import lombok.Data;
+
+/**
+ * A route and one of its directions, used to describe where a {@link Stop} is
+ * served.
+ */
+@Data
+public class RouteDirection {
+
+	private String rt; // route designator e.g. "4"
+	private String dir; // direction name e.g. "Northbound"
+
+	public RouteDirection() {
+	};
+
+	public RouteDirection(String rt, String dir) {
+		this.rt = rt;
+		this.dir = dir;
+	}
+}
@@ -0,0 +1,127 @@
+package com.lamarjs.route_tracker.repositories;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+import com.lamarjs.route_tracker.models.Stop;
+import com.lamarjs.route_tracker.services.NetworkSnapshot;
+
+/**
+ * Saves the most recent {@link NetworkSnapshot} to the bundled HSQLDB database
+ * and loads it back, so a restarted instance can serve the network
+ * immediately instead of rebuilding it from the CTA API. Only one snapshot is
+ * ever stored; saving replaces the previous one. Tables are created by
+ * schema.sql.
+ * 
+ * @author Lamar J. Smith
+ */
+@Repository
+public class NetworkSnapshotRepository {
+
+	private static final int SNAPSHOT_ID = 1;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	public NetworkSnapshotRepository(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * Replaces the stored snapshot with the one given. Rows for each table are
+	 * written in a single JDBC batch.
+	 */
+	@Transactional
+	public void save(NetworkSnapshot snapshot) {
+
+		jdbcTemplate.update("DELETE FROM direction_stop");
+		jdbcTemplate.update("DELETE FROM direction");
+		jdbcTemplate.update("DELETE FROM bus_line");
+		jdbcTemplate.update("DELETE FROM network_snapshot");
+
+		List<Object[]> lineRows = new ArrayList<>();
+		List<Object[]> directionRows = new ArrayList<>();
+		List<Object[]> stopRows = new ArrayList<>();
+
+		List<BusLine> busLines = snapshot.getBusLines();
+		for (int i = 0; i < busLines.size(); i++) {
+			BusLine line = busLines.get(i);
+			lineRows.add(new Object[] { line.getRt(), i, line.getRtnm(), line.getRtclr(),
+					snapshot.getFailures().get(line.getRt()) });
+
+			List<Direction> directions = line.getDirections() == null ? Collections.<Direction>emptyList()
+					: line.getDirections();
+			for (int j = 0; j < directions.size(); j++) {
+				Direction dir = directions.get(j);
+				directionRows.add(new Object[] { line.getRt(), j, dir.getDir() });
+
+				List<Stop> stops = dir.getStops() == null ? Collections.<Stop>emptyList() : dir.getStops();
+				for (int k = 0; k < stops.size(); k++) {
+					Stop stop = stops.get(k);
+					stopRows.add(new Object[] { line.getRt(), j, k, stop.getStpid(), stop.getStpnm(), stop.getLat(),
+							stop.getLon() });
+				}
+			}
+		}
+
+		jdbcTemplate.batchUpdate("INSERT INTO bus_line (rt, position, rtnm, rtclr, failure) VALUES (?, ?, ?, ?, ?)",
+				lineRows);
+		jdbcTemplate.batchUpdate("INSERT INTO direction (rt, position, dir) VALUES (?, ?, ?)", directionRows);
+		jdbcTemplate.batchUpdate(
+				"INSERT INTO direction_stop (rt, dir_position, position, stpid, stpnm, lat, lon) VALUES (?, ?, ?, ?, ?, ?, ?)",
+				stopRows);
+		jdbcTemplate.update("INSERT INTO network_snapshot (id, loaded_at) VALUES (?, ?)", SNAPSHOT_ID,
+				snapshot.getLoadedAt());
+	}
+
+	/**
+	 * @return The stored snapshot, or empty if none has been saved yet.
+	 */
+	@Transactional(readOnly = true)
+	public Optional<NetworkSnapshot> load() {
+
+		List<Long> loadedAt = jdbcTemplate.queryForList("SELECT loaded_at FROM network_snapshot WHERE id = ?",
+				Long.class, SNAPSHOT_ID);
+		if (loadedAt.isEmpty()) {
+			return Optional.empty();
+		}
+
+		Map<String, BusLine> busLines = new LinkedHashMap<>();
+		Map<String, String> failures = new HashMap<>();
+		jdbcTemplate.query("SELECT rt, rtnm, rtclr, failure FROM bus_line ORDER BY position", rs -> {
+			BusLine line = new BusLine(rs.getString("rt"), rs.getString("rtnm"), rs.getString("rtclr"),
+					new ArrayList<>());
+			busLines.put(line.getRt(), line);
+			if (rs.getString("failure") != null) {
+				failures.put(line.getRt(), rs.getString("failure"));
+			}
+		});
+
+		jdbcTemplate.query("SELECT rt, dir FROM direction ORDER BY rt, position", rs -> {
+			busLines.get(rs.getString("rt")).getDirections().add(new Direction(rs.getString("dir"), new ArrayList<>()));
+		});
+
+		jdbcTemplate.query(
+				"SELECT rt, dir_position, stpid, stpnm, lat, lon FROM direction_stop ORDER BY rt, dir_position, position",
+				rs -> {
+					Direction dir = busLines.get(rs.getString("rt")).getDirections().get(rs.getInt("dir_position"));
+					dir.getStops().add(
+							new Stop(rs.getInt("stpid"), rs.getString("stpnm"), rs.getDouble("lat"), rs.getDouble("lon")));
+				});
+
+		return Optional.of(new NetworkSnapshot(Collections.unmodifiableList(new ArrayList<>(busLines.values())),
+				Collections.unmodifiableMap(failures), loadedAt.get(0)));
+	}
+}
@@ -0,0 +1,250 @@
+package com.lamarjs.route_tracker.services;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Service;
+
+import com.lamarjs.route_tracker.exceptions.QuotaExceededException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The CTA API keys that requests are spread across. Keys are read from
+ * bustime.api.keys as a comma separated list, falling back to the BTRK
+ * environment variable, and handed out either round-robin or to the key with
+ * the fewest requests today, per bustime.api.key-selection. A key is handed
+ * out right before its request is sent and counted as used at that moment,
+ * so that a burst of concurrent requests is spread across the keys rather
+ * than sent with the same one.
+ * <p>
+ * A key that the CTA API rejects as invalid is taken out of rotation for good,
+ * and one that has hit its daily transaction limit is taken out until the
+ * quota resets at midnight Chicago time.
+ * </p>
+ * Each key's requests per second, requests today, total requests and errors
+ * are published through the actuator metrics endpoint as
+ * bustime.apikey.[n].*, where n is the key's position in the list, so that the
+ * keys themselves are never published.
+ *
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class ApiKeyPool implements PublicMetrics {
+
+	public enum Selection {
+		ROUND_ROBIN, LEAST_USED
+	}
+
+	public enum State {
+		ACTIVE, INVALID, EXHAUSTED
+	}
+
+	/**
+	 * Returned by the CTA API for an unknown or revoked key.
+	 */
+	static final String INVALID_KEY_ERROR = "invalid api access key";
+
+	/**
+	 * Returned by the CTA API once a key has used up its daily quota.
+	 */
+	static final String DAILY_LIMIT_ERROR = "transaction limit";
+
+	private static final ZoneId CTA_ZONE = ZoneId.of("America/Chicago");
+
+	private final Map<String, ApiKey> keys = new LinkedHashMap<>();
+	private final Selection selection;
+	private int next;
+	private LocalDate day = LocalDate.now(CTA_ZONE);
+	private volatile int activeCount;
+
+	@Autowired
+	public ApiKeyPool(@Value("${bustime.api.keys:${BTRK:}}") String keys,
+			@Value("${bustime.api.key-selection:ROUND_ROBIN}") Selection selection) {
+		this.selection = selection;
+		if (keys != null) {
+			for (String key : keys.split(",")) {
+				key = key.trim();
+				if (!key.isEmpty() && !this.keys.containsKey(key)) {
+					this.keys.put(key, new ApiKey(this.keys.size()));
+				}
+			}
+		}
+		activeCount = this.keys.size();
+		log.info("[ApiKeyPool()] - {} CTA API keys configured, selected {}", activeCount, selection);
+	}
+
+	/**
+	 * Hands out the key for a request that is about to be sent, and counts the
+	 * request against it.
+	 * 
+	 * @return The key the next request should be sent with, or null if no keys
+	 *         are configured.
+	 * @throws QuotaExceededException
+	 *             if every configured key has been taken out of rotation.
+	 */
+	public synchronized String next() throws QuotaExceededException {
+		if (keys.isEmpty()) {
+			return null;
+		}
+		rollDay();
+
+		List<Map.Entry<String, ApiKey>> active = new ArrayList<>(keys.size());
+		for (Map.Entry<String, ApiKey> entry : keys.entrySet()) {
+			if (entry.getValue().state == State.ACTIVE) {
+				active.add(entry);
+			}
+		}
+		if (active.isEmpty()) {
+			throw new QuotaExceededException("Every CTA API key has been taken out of rotation");
+		}
+
+		// Least-used scans from the round-robin position, so ties are spread.
+		int start = Math.floorMod(next++, active.size());
+		Map.Entry<String, ApiKey> chosen = active.get(start);
+		if (selection == Selection.LEAST_USED) {
+			for (int i = 1; i < active.size(); i++) {
+				Map.Entry<String, ApiKey> candidate = active.get((start + i) % active.size());
+				if (candidate.getValue().dailyUsed < chosen.getValue().dailyUsed) {
+					chosen = candidate;
+				}
+			}
+		}
+		count(chosen.getValue());
+		return chosen.getKey();
+	}
+
+	/**
+	 * Counts a request sent with the given key when it was not handed out by
+	 * {@link ApiKeyPool#next()}, e.g. one that was set explicitly.
+	 */
+	public synchronized void recordUse(String key) {
+		ApiKey apiKey = keys.get(key);
+		if (apiKey == null) {
+			return;
+		}
+		rollDay();
+		count(apiKey);
+	}
+
+	private void count(ApiKey apiKey) {
+		apiKey.tick(System.currentTimeMillis() / 1000);
+		apiKey.thisSecond++;
+		apiKey.dailyUsed++;
+		apiKey.total++;
+	}
+
+	/**
+	 * Counts an error message returned for a request sent with the given key,
+	 * taking the key out of rotation if the message says it can not be used.
+	 */
+	public synchronized void recordError(String key, String message) {
+		ApiKey apiKey = keys.get(key);
+		if (apiKey == null || message == null) {
+			return;
+		}
+		apiKey.errors++;
+
+		String error = message.toLowerCase();
+		if (error.contains(INVALID_KEY_ERROR)) {
+			remove(apiKey, State.INVALID, message);
+		} else if (error.contains(DAILY_LIMIT_ERROR)) {
+			remove(apiKey, State.EXHAUSTED, message);
+		}
+	}
+
+	/**
+	 * @return The number of keys currently in rotation.
+	 */
+	public int getActiveCount() {
+		return activeCount;
+	}
+
+	public synchronized State getState(String key) {
+		ApiKey apiKey = keys.get(key);
+		return apiKey == null ? null : apiKey.state;
+	}
+
+	private void remove(ApiKey apiKey, State state, String message) {
+		if (apiKey.state == State.ACTIVE) {
+			activeCount--;
+			log.warn("[recordError()] - Taking CTA API key #{} out of rotation ({}): {}", apiKey.index, state,
+					message);
+		}
+		apiKey.state = state;
+	}
+
+	private void rollDay() {
+		LocalDate today = LocalDate.now(CTA_ZONE);
+		if (today.equals(day)) {
+			return;
+		}
+		day = today;
+		for (ApiKey apiKey : keys.values()) {
+			apiKey.dailyUsed = 0;
+			if (apiKey.state == State.EXHAUSTED) {
+				apiKey.state = State.ACTIVE;
+				activeCount++;
+				log.info("[rollDay()] - Returning CTA API key #{} to rotation", apiKey.index);
+			}
+		}
+	}
+
+	@Override
+	public synchronized Collection<Metric<?>> metrics() {
+		rollDay();
+		long second = System.currentTimeMillis() / 1000;
+		List<Metric<?>> metrics = new ArrayList<>();
+		metrics.add(new Metric<>("bustime.apikey.active", activeCount));
+		for (ApiKey apiKey : keys.values()) {
+			apiKey.tick(second);
+			String name = "bustime.apikey." + apiKey.index;
+			metrics.add(new Metric<>(name + ".active", apiKey.state == State.ACTIVE ? 1 : 0));
+			metrics.add(new Metric<>(name + ".rate", apiKey.lastSecond));
+			metrics.add(new Metric<>(name + ".daily_used", apiKey.dailyUsed));
+			metrics.add(new Metric<>(name + ".requests", apiKey.total));
+			metrics.add(new Metric<>(name + ".errors", apiKey.errors));
+		}
+		return metrics;
+	}
+
+	/**
+	 * Usage of one key. Guarded by the pool.
+	 */
+	private static class ApiKey {
+
+		private final int index;
+		private State state = State.ACTIVE;
+		private long second;
+		private long thisSecond;
+		private long lastSecond;
+		private long dailyUsed;
+		private long total;
+		private long errors;
+
+		ApiKey(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * Moves the per-second counters up to the given epoch second.
+		 */
+		void tick(long now) {
+			if (now != second) {
+				lastSecond = now == second + 1 ? thisSecond : 0;
+				thisSecond = 0;
+				second = now;
+			}
+		}
+	}
+}
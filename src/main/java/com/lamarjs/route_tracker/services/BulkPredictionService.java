@@ -0,0 +1,166 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.lamarjs.route_tracker.models.BulkPredictions;
+import com.lamarjs.route_tracker.models.BulkPredictions.FailedChunk;
+import com.lamarjs.route_tracker.models.Prediction;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fetches predictions for more stops than the CTA API accepts in one request.
+ * The stops are split into chunks of
+ * {@link PredictionBatcher#MAX_STOPS_PER_REQUEST}, the chunks are requested in
+ * parallel, and the answers are merged per stop. A chunk that fails is
+ * reported on its own in {@link BulkPredictions#getFailedChunks()} and does
+ * not fail the others.
+ * <p>
+ * At most bustime.predictions.bulk-max-stops stops, and a top of at most
+ * bustime.predictions.bulk-max-top, are accepted per call.
+ * </p>
+ * <p>
+ * CTA applies top to each chunk's request as a whole, so a chunk asks for top
+ * predictions per stop in total and a busy stop can take more than its share,
+ * leaving a quieter stop in the same chunk with fewer than top predictions.
+ * </p>
+ * <p>
+ * Chunks are requested directly, not through the
+ * {@link PredictionCacheService}. They are neither cached nor shared with
+ * concurrent identical requests, and there is no stale fallback; each call
+ * costs one upstream request per chunk.
+ * </p>
+ *
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class BulkPredictionService {
+
+	private final BustimeAPIRequest requestService;
+	private final int maxStops;
+	private final int maxTop;
+
+	@Autowired
+	public BulkPredictionService(BustimeAPIRequest requestService,
+			@Value("${bustime.predictions.bulk-max-stops:500}") int maxStops,
+			@Value("${bustime.predictions.bulk-max-top:20}") int maxTop) {
+		this.requestService = requestService;
+		this.maxStops = maxStops;
+		this.maxTop = maxTop;
+	}
+
+	public int getMaxStops() {
+		return maxStops;
+	}
+
+	public int getMaxTop() {
+		return maxTop;
+	}
+
+	/**
+	 * @return The given stop ids as numbers, without blanks and duplicates, in
+	 *         the order they were first given.
+	 * @throws IllegalArgumentException
+	 *             if a stop id is not a number.
+	 */
+	public static List<Integer> normalize(List<String> stpids) {
+		if (stpids == null) {
+			return Collections.emptyList();
+		}
+		LinkedHashSet<Integer> normalized = new LinkedHashSet<>();
+		for (String stpid : stpids) {
+			if (stpid != null && !stpid.trim().isEmpty()) {
+				normalized.add(PredictionKey.parseStpid(stpid));
+			}
+		}
+		return new ArrayList<>(normalized);
+	}
+
+	/**
+	 * Requests predictions for the given stops, at most top per stop, giving
+	 * up on chunks that have not been answered by the deadline (epoch millis).
+	 * The returned future always completes normally.
+	 *
+	 * @param stpids
+	 *            Normalized stop ids, see
+	 *            {@link BulkPredictionService#normalize(List)}.
+	 */
+	public CompletableFuture<BulkPredictions> getPredictions(List<Integer> stpids, int top, long deadline) {
+
+		List<List<Integer>> chunks = new ArrayList<>();
+		for (int from = 0; from < stpids.size(); from += PredictionBatcher.MAX_STOPS_PER_REQUEST) {
+			chunks.add(new ArrayList<>(
+					stpids.subList(from, Math.min(stpids.size(), from + PredictionBatcher.MAX_STOPS_PER_REQUEST))));
+		}
+		log.debug("[getPredictions()] - Requesting predictions for {} stops in {} chunks", stpids.size(),
+				chunks.size());
+
+		List<CompletableFuture<ChunkResult>> requests = new ArrayList<>(chunks.size());
+		for (List<Integer> chunk : chunks) {
+			String chunkStpids = chunk.stream().map(String::valueOf).collect(Collectors.joining(","));
+			requests.add(requestService.requestPredictionBatchAsync(chunkStpids, chunk.size() * top, deadline)
+					.handle((batch, e) -> new ChunkResult(chunk, batch, e)));
+		}
+
+		return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[requests.size()])).thenApply(
+				done -> merge(requests.stream().map(CompletableFuture::join).collect(Collectors.toList()), top));
+	}
+
+	private static BulkPredictions merge(List<ChunkResult> results, int top) {
+		BulkPredictions merged = new BulkPredictions();
+
+		for (ChunkResult result : results) {
+			if (result.error != null) {
+				Throwable cause = result.error instanceof CompletionException && result.error.getCause() != null
+						? result.error.getCause() : result.error;
+				log.warn("[merge()] - Predictions request failed for stops {}: {}", result.stpids, cause.toString());
+				merged.getFailedChunks().add(new FailedChunk(
+						result.stpids.stream().map(String::valueOf).collect(Collectors.toList()),
+						String.valueOf(cause.getMessage())));
+				continue;
+			}
+
+			Map<Integer, List<Prediction>> byStop = result.batch.getPredictions().stream()
+					.collect(Collectors.groupingBy(Prediction::getStpid));
+			for (int stpid : result.stpids) {
+				String error = result.batch.getStopError(stpid);
+				if (error != null) {
+					merged.getStopErrors().put(String.valueOf(stpid), error);
+				} else {
+					List<Prediction> predictions = byStop.getOrDefault(stpid, Collections.<Prediction>emptyList());
+					merged.getPredictions().put(String.valueOf(stpid),
+							predictions.size() > top ? new ArrayList<>(predictions.subList(0, top)) : predictions);
+				}
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * The outcome of the upstream request for one chunk of stops.
+	 */
+	private static class ChunkResult {
+
+		private final List<Integer> stpids;
+		private final PredictionBatch batch;
+		private final Throwable error;
+
+		ChunkResult(List<Integer> stpids, PredictionBatch batch, Throwable error) {
+			this.stpids = stpids;
+			this.batch = batch;
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package com.lamarjs.route_tracker.services;
+
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+import com.lamarjs.route_tracker.models.Stop;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Serves single slices of the network (one route and its directions, or the
+ * stops along one direction of a route) without requiring the whole network
+ * to be loaded.
+ * </p>
+ * <p>
+ * A slice is answered from the current {@link NetworkSnapshot} when it holds
+ * it. Otherwise only that slice is requested from the CTA API and memoized.
+ * Concurrent requests for the same slice share one upstream call. Failed
+ * slices are not memoized, and the memo is cleared whenever a new snapshot is
+ * published.
+ * </p>
+ * <p>
+ * The route and direction are checked before any stops are requested: against
+ * the snapshot when one is loaded, without calling the CTA API, and otherwise
+ * against the memoized route list and directions. Upstream calls are made for
+ * a waiting client, so they are queued in the INTERACTIVE lane and give up on
+ * quota after bustime.request.deadline-ms.
+ * </p>
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class BusLineSliceService {
+
+	private static final String ROUTES = "routes";
+
+	private final BustimeAPIRequest requestService;
+	private final NetworkCacheService networkCache;
+	private final long deadline;
+	private final Map<String, CompletableFuture<List<BusLine>>> routes = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<BusLine>> lines = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<List<Stop>>> stops = new ConcurrentHashMap<>();
+
+	@Autowired
+	public BusLineSliceService(BustimeAPIRequest requestService, NetworkCacheService networkCache,
+			@Value("${bustime.request.deadline-ms:5000}") long deadline) {
+		this.requestService = requestService;
+		this.networkCache = networkCache;
+		this.deadline = deadline;
+	}
+
+	@EventListener
+	public void onNetworkPublished(NetworkSnapshotPublishedEvent event) {
+		routes.clear();
+		lines.clear();
+		stops.clear();
+	}
+
+	/**
+	 * @return The given route with the names of its directions, without their
+	 *         stops, or null if the route is not in the loaded network or, when
+	 *         none is loaded, the CTA does not know it.
+	 */
+	public BusLine getBusLine(String rt)
+			throws MalformedURLException, BusTimeErrorReceivedException, URISyntaxException {
+
+		Optional<NetworkSnapshot> snapshot = networkCache.getSnapshot();
+		BusLine cached = snapshot.isPresent() ? findLine(snapshot.get(), rt) : null;
+		if (snapshot.isPresent() && cached == null) {
+			return null;
+		}
+		if (cached != null && cached.getDirections() != null) {
+			return withoutStops(cached);
+		}
+
+		long expiresAt = System.currentTimeMillis() + deadline;
+		return memoize(lines, rt, () -> {
+			BusLine header = cached != null ? cached : findRoute(rt, expiresAt);
+			if (header == null) {
+				return null;
+			}
+			BusLine line = new BusLine(header.getRt(), header.getRtnm(), header.getRtclr(),
+					requestService.requestDirections(rt, expiresAt));
+			log.info("[getBusLine()] - Initialized directions for route {}", rt);
+			return line;
+		});
+	}
+
+	/**
+	 * @return The stops along the given direction of a route, or null if the
+	 *         route does not have that direction.
+	 */
+	public List<Stop> getStops(String rt, String dir)
+			throws MalformedURLException, BusTimeErrorReceivedException, URISyntaxException {
+
+		Optional<Direction> cached = networkCache.getSnapshot().map(snapshot -> findLine(snapshot, rt))
+				.filter(line -> line.getDirections() != null)
+				.flatMap(line -> line.getDirections().stream().filter(d -> d.getDir().equals(dir)).findFirst());
+		if (cached.isPresent() && cached.get().getStops() != null) {
+			return cached.get().getStops();
+		}
+
+		BusLine line = getBusLine(rt);
+		if (line == null || line.getDirections().stream().noneMatch(d -> d.getDir().equals(dir))) {
+			return null;
+		}
+
+		long expiresAt = System.currentTimeMillis() + deadline;
+		return memoize(stops, rt + "/" + dir, () -> {
+			List<Stop> loaded = requestService.requestStops(rt, dir, expiresAt);
+			log.info("[getStops()] - Initialized stops for route {} {}", rt, dir);
+			return loaded;
+		});
+	}
+
+	private static BusLine findLine(NetworkSnapshot snapshot, String rt) {
+		return snapshot.getBusLines().stream().filter(line -> line.getRt().equals(rt)).findFirst().orElse(null);
+	}
+
+	private BusLine findRoute(String rt, long expiresAt)
+			throws MalformedURLException, BusTimeErrorReceivedException, URISyntaxException {
+		List<BusLine> all = memoize(routes, ROUTES, () -> requestService.requestRoutes(expiresAt));
+		return all.stream().filter(line -> line.getRt().equals(rt)).findFirst().orElse(null);
+	}
+
+	private static BusLine withoutStops(BusLine line) {
+		return new BusLine(line.getRt(), line.getRtnm(), line.getRtclr(), line.getDirections().stream()
+				.map(dir -> new Direction(dir.getDir(), null)).collect(Collectors.toList()));
+	}
+
+	/**
+	 * Returns the memoized value for key, loading it on the calling thread if
+	 * no other caller has. A load that fails is forgotten, so the next caller
+	 * retries it.
+	 */
+	private static <T> T memoize(Map<String, CompletableFuture<T>> memo, String key, SliceLoader<T> loader)
+			throws MalformedURLException, BusTimeErrorReceivedException, URISyntaxException {
+
+		CompletableFuture<T> created = new CompletableFuture<>();
+		CompletableFuture<T> existing = memo.putIfAbsent(key, created);
+
+		if (existing == null) {
+			try {
+				T value = loader.load();
+				if (value == null) {
+					memo.remove(key, created);
+				}
+				created.complete(value);
+			} catch (Exception e) {
+				memo.remove(key, created);
+				created.completeExceptionally(e);
+			}
+		}
+
+		try {
+			return (existing == null ? created : existing).join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof BusTimeErrorReceivedException) {
+				throw (BusTimeErrorReceivedException) cause;
+			}
+			if (cause instanceof MalformedURLException) {
+				throw (MalformedURLException) cause;
+			}
+			if (cause instanceof URISyntaxException) {
+				throw (URISyntaxException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw e;
+		}
+	}
+
+	@FunctionalInterface
+	private interface SliceLoader<T> {
+		T load() throws MalformedURLException, BusTimeErrorReceivedException, URISyntaxException;
+	}
+}
@@ -4,11 +4,17 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
 
+import org.apache.commons.io.input.CountingInputStream;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -18,39 +24,55 @@ import org.springframework.web.client.RestTemplate;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.PathNotFoundException;
-import com.jayway.jsonpath.TypeRef;
 import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.metrics.BustimeMetrics;
 import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.BustimeError;
 import com.lamarjs.route_tracker.models.Direction;
 import com.lamarjs.route_tracker.models.Prediction;
 import com.lamarjs.route_tracker.models.Stop;
 
-import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
 /**
- * This class represents a request to (and response from) the CTA Bustime
- * (BusTracker) API. It also provides the methods needed to build then send the
- * requests as well as parse the json response's returned by them into the
- * associated objets when provided. The enums {@link RequestType} and
- * {@link Parameter} represent the legal components of any valid request to the
- * Bustime API.
+ * This class builds and sends requests to the CTA Bustime (BusTracker) API. It
+ * provides the methods needed to build then send the requests as well as parse
+ * the json response's returned by them into the associated objets when
+ * provided. The enums {@link RequestType} and {@link Parameter} represent the
+ * legal components of any valid request to the Bustime API.
+ * <p>
+ * Instances hold no per-request state: every built request URL and every
+ * {@link BustimeResponse} is a new immutable object owned by the caller, so a
+ * single instance can safely be shared by concurrent requests.
+ * </p>
+ * <p>
+ * The requestXxx methods stream each response through
+ * {@link BustimeResponseParser} straight into model objects.
+ * {@link BustimeAPIRequest#send(URL)} is kept for callers that want the whole
+ * parsed Json document.
+ * </p>
+ * <p>
+ * The asynchronous predictions methods are hedged and bound by the caller's
+ * deadline through the {@link RequestHedger}.
+ * </p>
  * 
  * @author Lamar J. Smith
  */
 @Service
-@Data
 public class BustimeAPIRequest {
 
 	// Base request components
 	/**
 	 * This is the base component of the CTA API's request URL. The key and any
-	 * parameters that follow it are appended to the end of this string.
+	 * parameters that follow it are appended to the end of this string. It can
+	 * be overridden with bustime.api.base-url, e.g. to point at a stub server.
 	 */
 	public static final String BUSTIME_REQUEST_BASE = "http://ctabustracker.com/bustime/api/v2/";
 
 	/**
-	 * The API key, which can be stored as an environment variable on the
-	 * server, or set explicitly.
+	 * The API key, which is taken from the {@link ApiKeyPool}, or set
+	 * explicitly.
 	 */
 	public static final String API_KEY = "?key=";
 
@@ -133,16 +155,40 @@ public class BustimeAPIRequest {
 		public String format() {
 			return format;
 		}
+
+		/**
+		 * @return The request type of a URL built by this class.
+		 */
+		public static RequestType fromURL(URL requestURL) {
+			String path = requestURL.getPath();
+			for (RequestType type : values()) {
+				if (path.endsWith(type.format)) {
+					return type;
+				}
+			}
+			throw new IllegalArgumentException("Not a CTA API request: " + requestURL);
+		}
 	}
 
 	// Properties
-	private RestTemplateBuilder templateBuilder;
+	private RestTemplate restTemplate;
 	private Configuration jsonPathConfig;
-	private URL requestURL; // The request URL.
-	private Object responseBody; // The response returned by the CTA API as a
-									// parsed Json document.
-	private String key; // The API key component of a request that can be set as
-						// an environment variable or explicitly set.
+	private BustimeResponseParser responseParser;
+	private QuotaGovernor quotaGovernor;
+	private ApiKeyPool keyPool;
+	private BustimeMetrics metrics;
+	private UpstreamGuard upstreamGuard;
+	private RequestHedger requestHedger;
+	private ExecutorService asyncExecutor;
+	@Getter
+	@Setter
+	private volatile String key; // The API key component of a request. When
+									// set explicitly it is used instead of the
+									// key pool.
+	@Getter
+	@Setter
+	@Value("${bustime.api.base-url:" + BUSTIME_REQUEST_BASE + "}")
+	private volatile String baseUrl = BUSTIME_REQUEST_BASE;
 
 	// Constructors
 
@@ -150,7 +196,7 @@ public class BustimeAPIRequest {
 	 * Creates a BusTimeAPIRequest object. The supplied builder methods
 	 * construct legal API request URLs for the various end-points that the CTA
 	 * has made available. Once a requestURL has been created, the
-	 * {@link send()} method can be called to send the requestURL to the CTA
+	 * {@link send(URL)} method can be called to send the requestURL to the CTA
 	 * API.
 	 */
 	public BustimeAPIRequest() {
@@ -159,11 +205,24 @@ public class BustimeAPIRequest {
 		key = System.getenv("BTRK");
 	}
 
+	/**
+	 * Creates a BusTimeAPIRequest that spreads requests across the keys in the
+	 * given {@link ApiKeyPool}, unless a key is set explicitly.
+	 */
 	@Autowired
-	public BustimeAPIRequest(RestTemplateBuilder templateBuilder, Configuration jsonPathConfig) {
-		key = System.getenv("BTRK");
-		this.templateBuilder = templateBuilder;
+	public BustimeAPIRequest(RestTemplate restTemplate, Configuration jsonPathConfig,
+			BustimeResponseParser responseParser, QuotaGovernor quotaGovernor, ApiKeyPool keyPool,
+			BustimeMetrics metrics, UpstreamGuard upstreamGuard, RequestHedger requestHedger,
+			@Qualifier("bustimeExecutor") ExecutorService asyncExecutor) {
+		this.restTemplate = restTemplate;
 		this.jsonPathConfig = jsonPathConfig;
+		this.responseParser = responseParser;
+		this.quotaGovernor = quotaGovernor;
+		this.keyPool = keyPool;
+		this.metrics = metrics;
+		this.upstreamGuard = upstreamGuard;
+		this.requestHedger = requestHedger;
+		this.asyncExecutor = asyncExecutor;
 	}
 
 	/**
@@ -179,21 +238,6 @@ public class BustimeAPIRequest {
 		this.key = key;
 	}
 
-	/**
-	 * Convenience method primarily for testing. Allows a requestURL to be
-	 * specified as an argument instead of building it with the helper methods
-	 * after creation of the instance.
-	 * 
-	 * @param requestURL
-	 *            The request url for the CTA API. The send() method has to be
-	 *            called on this instance to actually pass the request and
-	 *            retrieve the data for the responseBody.
-	 *
-	 */
-	public BustimeAPIRequest(URL requestURL, String key) {
-		this.requestURL = requestURL;
-	}
-
 	/**
 	 * Builds a well formated request url for the CTA API. The enums:
 	 * {@link Parameter} and {@link RequestType} in this class provide the
@@ -206,9 +250,10 @@ public class BustimeAPIRequest {
 	 *            A map of <{@link Parameter}, {@linkString}> pairs that each
 	 *            represent a parameter and value to be included in the
 	 *            requestURL.
+	 * @return The request URL.
 	 * @throws MalformedURLException
 	 */
-	public BustimeAPIRequest buildRequestURL(RequestType requestType, Map<Parameter, String> urlParameters,
+	public URL buildRequestURL(RequestType requestType, Map<Parameter, String> urlParameters,
 			Boolean returnJson) throws MalformedURLException {
 
 		StringBuilder paramsBuilder = new StringBuilder();
@@ -217,10 +262,9 @@ public class BustimeAPIRequest {
 		}
 		paramsBuilder.append(returnJson ? F_JSON : "");
 
-		StringBuilder requestBuilder = new StringBuilder(BUSTIME_REQUEST_BASE).append(requestType.format)
-				.append(API_KEY).append(key).append(paramsBuilder.toString());
-		requestURL = new URL(requestBuilder.toString());
-		return this;
+		StringBuilder requestBuilder = new StringBuilder(baseUrl).append(requestType.format)
+				.append(API_KEY).append(currentKey()).append(paramsBuilder.toString());
+		return new URL(requestBuilder.toString());
 	}
 
 	/**
@@ -237,16 +281,73 @@ public class BustimeAPIRequest {
 	 * @param urlParameters
 	 * @param returnJson
 	 *            Requests response as json
+	 * @return The request URL.
 	 * @throws MalformedURLException
 	 */
-	public BustimeAPIRequest buildRequestURL(RequestType requestType, String urlParameters, Boolean returnJson)
+	public URL buildRequestURL(RequestType requestType, String urlParameters, Boolean returnJson)
 			throws MalformedURLException {
 
-		StringBuilder requestBuilder = new StringBuilder(BUSTIME_REQUEST_BASE).append(requestType.format)
-				.append(API_KEY).append(key).append(urlParameters).append(returnJson ? F_JSON : "");
+		StringBuilder requestBuilder = new StringBuilder(baseUrl).append(requestType.format)
+				.append(API_KEY).append(currentKey()).append(urlParameters).append(returnJson ? F_JSON : "");
+
+		return new URL(requestBuilder.toString());
+	}
+
+	/**
+	 * @return The explicitly set key or, when keys come from the pool, an
+	 *         empty key that is filled in when the request is sent.
+	 */
+	private String currentKey() {
+		String explicitKey = key;
+		if (explicitKey != null || keyPool == null) {
+			return explicitKey;
+		}
+		return "";
+	}
+
+	/**
+	 * Takes the pool's next key for a URL built without one, or else counts
+	 * the request against the key it was built with. Called inside the
+	 * {@link UpstreamGuard}, right before the request is sent, so that only
+	 * requests that are actually sent take and count a key.
+	 * 
+	 * @return The URL to send.
+	 */
+	private URL keyed(URL requestURL) {
+		if (keyPool == null) {
+			return requestURL;
+		}
+		String builtKey = keyOf(requestURL);
+		if (builtKey != null && !builtKey.isEmpty()) {
+			keyPool.recordUse(builtKey);
+			return requestURL;
+		}
+		String poolKey = keyPool.next();
+		if (poolKey == null) {
+			return requestURL;
+		}
+		String url = requestURL.toString();
+		int at = url.indexOf(API_KEY) + API_KEY.length();
+		try {
+			return new URL(url.substring(0, at) + poolKey + url.substring(at));
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException("Can not add a key to " + requestURL, e);
+		}
+	}
 
-		requestURL = new URL(requestBuilder.toString());
-		return this;
+	/**
+	 * @return The key a request URL built by this class was built with.
+	 */
+	private static String keyOf(URL requestURL) {
+		String query = requestURL.getQuery();
+		if (query != null) {
+			for (String param : query.split("&")) {
+				if (param.startsWith("key=")) {
+					return param.substring("key=".length());
+				}
+			}
+		}
+		return null;
 	}
 
 	/**
@@ -257,10 +358,10 @@ public class BustimeAPIRequest {
 	 * @see BustimeAPIRequest#buildRequestURL(RequestType, String, Boolean)
 	 * @param requestType
 	 * @param urlParameters
-	 * @return
+	 * @return The request URL.
 	 * @throws MalformedURLException
 	 */
-	public BustimeAPIRequest buildRequestURL(RequestType requestType, String urlParameters)
+	public URL buildRequestURL(RequestType requestType, String urlParameters)
 			throws MalformedURLException {
 		return this.buildRequestURL(requestType, urlParameters, true);
 	}
@@ -268,37 +369,33 @@ public class BustimeAPIRequest {
 	/**
 	 * Convenience method to build a valid Routes ("getRoutes") requestURL
 	 * 
-	 * @param requestType
-	 * @param urlParameters
+	 * @return The request URL.
 	 * @throws MalformedURLException
 	 */
-	public BustimeAPIRequest buildRoutesRequestURL() throws MalformedURLException {
+	public URL buildRoutesRequestURL() throws MalformedURLException {
 		return buildRequestURL(RequestType.ROUTES, "", true);
 	}
 
 	/**
 	 * Sends the requestURL. A proper URL can be built using
-	 * {@link buildRequestURL()}, {@link buildGetRoutesRequest()}, or
-	 * {@link setRequestURL()}. This method populates the responseBody with the
-	 * Json returned by the CTA API.
+	 * {@link buildRequestURL()} or {@link buildRoutesRequestURL()}. The
+	 * request is sent through the shared, pooled {@link RestTemplate} provided
+	 * by {@link BustimeClientConfiguration}, once the {@link QuotaGovernor}
+	 * allows it.
 	 * 
-	 * @throws BusTimeErrorReceivedException
-	 *             if an error message is returned in the CTA response.
+	 * @return A new {@link BustimeResponse} holding the Json returned by the
+	 *         CTA API.
 	 */
-	public BustimeAPIRequest send(URL requestURL) {
-
-		RestTemplate template = templateBuilder.build();
-
-		ResponseEntity<String> responseEntity = template.exchange(requestURL.toString(), HttpMethod.GET, null,
-				String.class);
-
-		responseBody = jsonPathConfig.jsonProvider().parse(responseEntity.getBody());
+	public BustimeResponse send(URL requestURL) {
 
-		return this;
-	}
+		quotaGovernor.acquire(RequestPriority.INTERACTIVE);
+		URL[] sent = { requestURL };
+		ResponseEntity<String> responseEntity = upstreamGuard.call(RequestType.fromURL(requestURL), () -> {
+			sent[0] = keyed(requestURL);
+			return restTemplate.exchange(sent[0].toString(), HttpMethod.GET, null, String.class);
+		});
 
-	public BustimeAPIRequest send() {
-		return send(requestURL);
+		return new BustimeResponse(sent[0], jsonPathConfig.jsonProvider().parse(responseEntity.getBody()));
 	}
 
 	public String getBustimeError(Object responseBody) {
@@ -313,6 +410,85 @@ public class BustimeAPIRequest {
 		return error;
 	}
 
+	/**
+	 * Waits for quota in the given lane and passes through the
+	 * {@link UpstreamGuard} for the request type, then sends the requestURL
+	 * and streams the response body through the {@link BustimeResponseParser},
+	 * binding the named array to objects of the given type. Latency, parse
+	 * time, response size and errors are recorded in {@link BustimeMetrics}
+	 * under the given request type, and the request and its errors are counted
+	 * against its key in the {@link ApiKeyPool}.
+	 * 
+	 * @see BustimeResponseParser#parse(java.io.InputStream, String, Class)
+	 */
+	private <T> ParsedResponse<T> sendAndParse(URL requestURL, RequestType requestType, RequestPriority priority,
+			String field, Class<T> type) {
+		return sendAndParse(requestURL, requestType, () -> quotaGovernor.acquire(priority), field, type);
+	}
+
+	/**
+	 * Same as
+	 * {@link BustimeAPIRequest#sendAndParse(URL, RequestType, RequestPriority, String, Class)}
+	 * but runs the given admission, e.g. a deadline bound quota wait, instead
+	 * of waiting for quota in a lane. The admission runs before entering the
+	 * guard, so that no bulkhead permit is held while it waits.
+	 */
+	private <T> ParsedResponse<T> sendAndParse(URL requestURL, RequestType requestType, Runnable admission,
+			String field, Class<T> type) {
+		ParsedResponse<T> response;
+		URL[] sent = { requestURL };
+		try {
+			admission.run();
+			response = upstreamGuard.call(requestType, () -> {
+				sent[0] = keyed(requestURL);
+				return execute(sent[0], requestType, field, type);
+			});
+		} catch (RestClientException e) {
+			metrics.recordUpstreamError(requestType, e.getClass().getSimpleName());
+			throw e;
+		}
+
+		for (BustimeError error : response.getErrors()) {
+			metrics.recordUpstreamError(requestType, error.getMsg());
+			if (keyPool != null) {
+				keyPool.recordError(keyOf(sent[0]), error.getMsg());
+			}
+		}
+		return response;
+	}
+
+	private <T> ParsedResponse<T> execute(URL requestURL, RequestType requestType, String field, Class<T> type) {
+		long start = System.nanoTime();
+		return restTemplate.execute(requestURL.toString(), HttpMethod.GET, null, httpResponse -> {
+			long responded = System.nanoTime();
+			CountingInputStream body = new CountingInputStream(httpResponse.getBody());
+			ParsedResponse<T> parsed = responseParser.parse(body, field, type);
+			metrics.recordUpstream(requestType, (responded - start) / 1000000,
+					(System.nanoTime() - responded) / 1000000, body.getByteCount());
+			return parsed;
+		});
+	}
+
+	/**
+	 * Sends the requestURL and returns the parsed objects, failing if the CTA
+	 * API answered with an error message instead of data.
+	 * 
+	 * @throws BusTimeErrorReceivedException
+	 *             if an error message is returned in the CTA response.
+	 */
+	private <T> List<T> sendAndCheckError(URL requestURL, RequestType requestType, RequestPriority priority,
+			String field, Class<T> type) throws BusTimeErrorReceivedException {
+		return checkError(sendAndParse(requestURL, requestType, priority, field, type));
+	}
+
+	private static <T> List<T> checkError(ParsedResponse<T> response) throws BusTimeErrorReceivedException {
+		String error = response.getFirstError();
+		if (error != null) {
+			throw new BusTimeErrorReceivedException(error);
+		}
+		return response.getItems();
+	}
+
 	/**
 	 * Requests a list of all operating BusLines (routes).
 	 * 
@@ -327,23 +503,25 @@ public class BustimeAPIRequest {
 	 */
 	public List<BusLine> requestRoutes(URL requestURL)
 			throws BusTimeErrorReceivedException, RestClientException, URISyntaxException {
-		send(requestURL);
-
-		String error = getBustimeError(responseBody);
-		if (error != null) {
-			throw new BusTimeErrorReceivedException(error);
-		}
-
-		return JsonPath.using(jsonPathConfig).parse(responseBody).read("$.bustime-response.routes[*]",
-				new TypeRef<List<BusLine>>() {
-				});
+		return sendAndCheckError(requestURL, RequestType.ROUTES, RequestPriority.REFRESH, "routes", BusLine.class);
 	}
 
 	public List<BusLine> requestRoutes()
 			throws BusTimeErrorReceivedException, MalformedURLException, RestClientException, URISyntaxException {
 
-		buildRoutesRequestURL();
-		return requestRoutes(requestURL);
+		return requestRoutes(buildRoutesRequestURL());
+	}
+
+	/**
+	 * Same as {@link BustimeAPIRequest#requestRoutes()} but for a client that
+	 * is waiting on the answer: queued for quota in the INTERACTIVE lane, and
+	 * given up with a
+	 * {@link com.lamarjs.route_tracker.exceptions.QuotaExceededException} if
+	 * no quota is free by the deadline (epoch millis).
+	 */
+	public List<BusLine> requestRoutes(long deadline) throws BusTimeErrorReceivedException, MalformedURLException {
+		return checkError(sendAndParse(buildRoutesRequestURL(), RequestType.ROUTES, interactive(deadline), "routes",
+				BusLine.class));
 	}
 
 	/**
@@ -364,17 +542,20 @@ public class BustimeAPIRequest {
 			throws MalformedURLException, BusTimeErrorReceivedException {
 
 		// Build the directions request
-		buildRequestURL(RequestType.DIRECTIONS, Parameter.ROUTE.Format + routeCode);
-		send();
-
-		String error = getBustimeError(responseBody);
-		if (error != null) {
-			throw new BusTimeErrorReceivedException(error);
-		}
+		return sendAndCheckError(buildRequestURL(RequestType.DIRECTIONS, Parameter.ROUTE.Format + routeCode),
+				RequestType.DIRECTIONS, RequestPriority.REFRESH, "directions", Direction.class);
+	}
 
-		return JsonPath.using(jsonPathConfig).parse(responseBody).read("$.bustime-response.directions[*]",
-				new TypeRef<List<Direction>>() {
-				});
+	/**
+	 * Same as {@link BustimeAPIRequest#requestDirections(String)} but for a
+	 * client that is waiting on the answer.
+	 * 
+	 * @see BustimeAPIRequest#requestRoutes(long)
+	 */
+	public List<Direction> requestDirections(String routeCode, long deadline)
+			throws MalformedURLException, BusTimeErrorReceivedException {
+		return checkError(sendAndParse(buildRequestURL(RequestType.DIRECTIONS, Parameter.ROUTE.Format + routeCode),
+				RequestType.DIRECTIONS, interactive(deadline), "directions", Direction.class));
 	}
 
 	/**
@@ -399,18 +580,29 @@ public class BustimeAPIRequest {
 		StringBuilder paramsBuilder = new StringBuilder(Parameter.ROUTE.Format).append(rt)
 				.append(Parameter.DIRECTION.Format).append(direction);
 
-		buildRequestURL(RequestType.STOPS, paramsBuilder.toString());
-		send();
+		// Parse the response into a stops list.
+		return sendAndCheckError(buildRequestURL(RequestType.STOPS, paramsBuilder.toString()),
+				RequestType.STOPS, RequestPriority.REFRESH, "stops", Stop.class);
+	}
 
-		String error = getBustimeError(responseBody);
-		if (error != null) {
-			throw new BusTimeErrorReceivedException(error);
-		}
+	/**
+	 * Same as {@link BustimeAPIRequest#requestStops(String, String)} but for a
+	 * client that is waiting on the answer.
+	 * 
+	 * @see BustimeAPIRequest#requestRoutes(long)
+	 */
+	public List<Stop> requestStops(String rt, String direction, long deadline)
+			throws MalformedURLException, BusTimeErrorReceivedException {
 
-		// Parse the response into a stops list.
-		return JsonPath.using(jsonPathConfig).parse(responseBody).read("$.bustime-response.stops[*]",
-				new TypeRef<List<Stop>>() {
-				});
+		StringBuilder paramsBuilder = new StringBuilder(Parameter.ROUTE.Format).append(rt)
+				.append(Parameter.DIRECTION.Format).append(direction);
+
+		return checkError(sendAndParse(buildRequestURL(RequestType.STOPS, paramsBuilder.toString()),
+				RequestType.STOPS, interactive(deadline), "stops", Stop.class));
+	}
+
+	private Runnable interactive(long deadline) {
+		return () -> quotaGovernor.acquire(RequestPriority.INTERACTIVE, deadline);
 	}
 
 	/**
@@ -432,22 +624,151 @@ public class BustimeAPIRequest {
 	 */
 	public List<Prediction> requestPredictions(String stpids, String rts, int top)
 			throws MalformedURLException, BusTimeErrorReceivedException {
+		return requestPredictions(stpids, rts, top, RequestPriority.INTERACTIVE);
+	}
+
+	/**
+	 * Same as {@link BustimeAPIRequest#requestPredictions(String, String, int)}
+	 * but queued for quota in the given lane.
+	 */
+	public List<Prediction> requestPredictions(String stpids, String rts, int top, RequestPriority priority)
+			throws MalformedURLException, BusTimeErrorReceivedException {
+
+		// Parse the response into a predictions list.
+		return sendAndCheckError(buildPredictionsRequestURL(stpids, rts, top), RequestType.PREDICTIONS, priority,
+				"prd", Prediction.class);
+	}
+
+	private URL buildPredictionsRequestURL(String stpids, String rts, int top) throws MalformedURLException {
 
 		// Format the passed in stop ids and route codes, and top (limit)
 		StringBuilder paramsBuilder = new StringBuilder(Parameter.STOPID.Format).append(stpids)
 				.append(Parameter.ROUTE.Format).append(rts).append(Parameter.LIMIT.Format).append(top);
 
-		buildRequestURL(RequestType.PREDICTIONS, paramsBuilder.toString());
-		send();
+		return buildRequestURL(RequestType.PREDICTIONS, paramsBuilder.toString());
+	}
 
-		String error = getBustimeError(responseBody);
-		if (error != null) {
-			throw new BusTimeErrorReceivedException(error);
+	/**
+	 * Requests predictions for several stops at once. Unlike
+	 * {@link BustimeAPIRequest#requestPredictions(String, String, int)}, an
+	 * error entry that names a stop only fails that stop; its message is
+	 * returned in {@link PredictionBatch#getStopErrors()} alongside the
+	 * predictions for the other stops.
+	 * 
+	 * @param stpids
+	 *            Comma separated list of up to 10 stop ids.
+	 * @param top
+	 *            The maximum number of predictions to return across all stops.
+	 * @throws MalformedURLException
+	 * @throws BusTimeErrorReceivedException
+	 *             if the response includes an error message that is not tied
+	 *             to a single stop, e.g. an invalid key.
+	 */
+	public PredictionBatch requestPredictionBatch(String stpids, int top)
+			throws MalformedURLException, BusTimeErrorReceivedException {
+		return toPredictionBatch(sendAndParse(buildPredictionBatchRequestURL(stpids, top), RequestType.PREDICTIONS,
+				RequestPriority.INTERACTIVE, "prd", Prediction.class));
+	}
+
+	private URL buildPredictionBatchRequestURL(String stpids, int top) throws MalformedURLException {
+
+		StringBuilder paramsBuilder = new StringBuilder(Parameter.STOPID.Format).append(stpids)
+				.append(Parameter.LIMIT.Format).append(top);
+
+		return buildRequestURL(RequestType.PREDICTIONS, paramsBuilder.toString());
+	}
+
+	private static PredictionBatch toPredictionBatch(ParsedResponse<Prediction> response)
+			throws BusTimeErrorReceivedException {
+
+		Map<String, String> stopErrors = new HashMap<>();
+		for (BustimeError error : response.getErrors()) {
+			if (error.getStpid() == null) {
+				throw new BusTimeErrorReceivedException(error.getMsg());
+			}
+			stopErrors.put(error.getStpid(), error.getMsg());
 		}
 
-		// Parse the response into a stops list.
-		return JsonPath.using(jsonPathConfig).parse(responseBody).read("$.bustime-response.prd[*]",
-				new TypeRef<List<Prediction>>() {
-				});
+		return new PredictionBatch(response.getItems(), stopErrors);
+	}
+
+	/**
+	 * Asynchronous variant of {@link BustimeAPIRequest#requestRoutes()}.
+	 */
+	public CompletableFuture<List<BusLine>> requestRoutesAsync() {
+		return async(this::requestRoutes);
+	}
+
+	/**
+	 * Asynchronous variant of
+	 * {@link BustimeAPIRequest#requestDirections(String)}.
+	 */
+	public CompletableFuture<List<Direction>> requestDirectionsAsync(String routeCode) {
+		return async(() -> requestDirections(routeCode));
+	}
+
+	/**
+	 * Asynchronous variant of
+	 * {@link BustimeAPIRequest#requestStops(String, String)}.
+	 */
+	public CompletableFuture<List<Stop>> requestStopsAsync(String rt, String direction) {
+		return async(() -> requestStops(rt, direction));
+	}
+
+	/**
+	 * Asynchronous variant of
+	 * {@link BustimeAPIRequest#requestPredictions(String, String, int)}.
+	 */
+	public CompletableFuture<List<Prediction>> requestPredictionsAsync(String stpids, String rts, int top) {
+		return requestPredictionsAsync(stpids, rts, top, RequestHedger.NO_DEADLINE);
+	}
+
+	/**
+	 * Asynchronous, hedged variant of
+	 * {@link BustimeAPIRequest#requestPredictions(String, String, int)}. No
+	 * work is started for the request once the deadline (epoch millis) has
+	 * passed.
+	 * 
+	 * @see RequestHedger
+	 */
+	public CompletableFuture<List<Prediction>> requestPredictionsAsync(String stpids, String rts, int top,
+			long deadline) {
+		return requestHedger.send(RequestType.PREDICTIONS, RequestPriority.INTERACTIVE, deadline,
+				admission -> checkError(sendAndParse(buildPredictionsRequestURL(stpids, rts, top),
+						RequestType.PREDICTIONS, admission, "prd", Prediction.class)));
+	}
+
+	/**
+	 * Asynchronous, hedged variant of
+	 * {@link BustimeAPIRequest#requestPredictionBatch(String, int)}.
+	 * 
+	 * @see BustimeAPIRequest#requestPredictionsAsync(String, String, int, long)
+	 */
+	public CompletableFuture<PredictionBatch> requestPredictionBatchAsync(String stpids, int top, long deadline) {
+		return requestHedger.send(RequestType.PREDICTIONS, RequestPriority.INTERACTIVE, deadline,
+				admission -> toPredictionBatch(sendAndParse(buildPredictionBatchRequestURL(stpids, top),
+						RequestType.PREDICTIONS, admission, "prd", Prediction.class)));
+	}
+
+	/**
+	 * Runs the request on the bustimeExecutor. The returned future completes
+	 * exceptionally with whatever the request threw, wrapped in a
+	 * {@link CompletionException}.
+	 */
+	private <T> CompletableFuture<T> async(UpstreamCall<T> call) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return call.call();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}, asyncExecutor);
+	}
+
+	@FunctionalInterface
+	private interface UpstreamCall<T> {
+		T call() throws Exception;
 	}
-}
\ No newline at end of file
+}
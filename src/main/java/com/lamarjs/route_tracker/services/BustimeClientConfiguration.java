@@ -0,0 +1,102 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.http.impl.NoConnectionReuseStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.client.RestTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Provides the single, long-lived {@link RestTemplate} used for every call to
+ * the CTA Bustime API. The template is backed by a pooling Apache HttpClient,
+ * so consecutive route, direction, stop and prediction requests reuse open
+ * connections to the CTA host instead of paying for a new handshake each time.
+ * At most bustime.client.max-connections-per-host connections are open to the
+ * host at once; further requests wait for one to be returned to the pool.
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Configuration
+public class BustimeClientConfiguration {
+
+	@Value("${bustime.client.max-connections-per-host:20}")
+	private int maxConnectionsPerHost;
+
+	@Value("${bustime.client.connect-timeout-ms:5000}")
+	private int connectTimeout;
+
+	@Value("${bustime.client.read-timeout-ms:10000}")
+	private int readTimeout;
+
+	@Value("${bustime.client.keep-alive:true}")
+	private boolean keepAlive;
+
+	@Value("${bustime.client.gzip:true}")
+	private boolean gzip;
+
+	@Value("${bustime.client.async-threads:64}")
+	private int asyncThreads;
+
+	/**
+	 * The threads that the asynchronous request methods of
+	 * {@link BustimeAPIRequest} send their requests on, so that servlet
+	 * container threads are not held while waiting on the CTA API.
+	 */
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService bustimeExecutor() {
+		return Executors.newFixedThreadPool(asyncThreads, new CustomizableThreadFactory("bustime-async-"));
+	}
+
+	/**
+	 * The connection pool behind {@link BustimeClientConfiguration#bustimeRestTemplate}.
+	 * Only the CTA host is called, so the pool as a whole is sized to the
+	 * per-host limit. Response decompression is left to the
+	 * {@link GzipRequestInterceptor}, so that bustime.client.gzip alone
+	 * decides whether compressed responses are asked for.
+	 */
+	@Bean(destroyMethod = "close")
+	public CloseableHttpClient bustimeHttpClient() {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+		connectionManager.setMaxTotal(maxConnectionsPerHost);
+
+		HttpClientBuilder builder = HttpClientBuilder.create().setConnectionManager(connectionManager)
+				.disableContentCompression();
+		if (!keepAlive) {
+			builder.setConnectionReuseStrategy(NoConnectionReuseStrategy.INSTANCE);
+		}
+		return builder.build();
+	}
+
+	@Bean
+	public RestTemplate bustimeRestTemplate(RestTemplateBuilder templateBuilder, CloseableHttpClient bustimeHttpClient) {
+
+		HttpComponentsClientHttpRequestFactory requestFactory = new HttpComponentsClientHttpRequestFactory(
+				bustimeHttpClient);
+		requestFactory.setConnectTimeout(connectTimeout);
+		requestFactory.setConnectionRequestTimeout(connectTimeout);
+		requestFactory.setReadTimeout(readTimeout);
+		requestFactory.setBufferRequestBody(false);
+
+		log.info("[bustimeRestTemplate()] - keepAlive: {}, maxConnectionsPerHost: {}, connectTimeout: {}ms, "
+				+ "readTimeout: {}ms, gzip: {}", keepAlive, maxConnectionsPerHost, connectTimeout, readTimeout, gzip);
+
+		RestTemplateBuilder builder = templateBuilder.requestFactory(requestFactory);
+		if (gzip) {
+			builder = builder.additionalInterceptors(new GzipRequestInterceptor());
+		}
+		return builder.build();
+	}
+}
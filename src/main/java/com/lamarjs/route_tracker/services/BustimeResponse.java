@@ -0,0 +1,21 @@
+package com.lamarjs.route_tracker.services;
+
+import java.net.URL;
+
+import lombok.Value;
+
+/**
+ * An immutable pairing of a request URL sent to the CTA Bustime API and the
+ * parsed Json document that was returned for it. A new instance is created for
+ * every call to {@link BustimeAPIRequest#send(URL)} so that concurrent
+ * requests never share response state.
+ * 
+ * @author Lamar J. Smith
+ */
+@Value
+public class BustimeResponse {
+
+	private final URL requestURL; // The request URL that was sent.
+	private final Object responseBody; // The response returned by the CTA API
+										// as a parsed Json document.
+}
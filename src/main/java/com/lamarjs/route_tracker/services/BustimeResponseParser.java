@@ -0,0 +1,102 @@
+package com.lamarjs.route_tracker.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.lamarjs.route_tracker.models.BustimeError;
+
+/**
+ * Reads CTA API responses in a single streaming pass. Rather than building a
+ * Json tree and then querying it, the parser walks the tokens of
+ * "bustime-response" directly, binding each element of the requested array
+ * (and of the "error" array) to its model object as it goes, and skipping
+ * everything else.
+ * 
+ * @author Lamar J. Smith
+ */
+@Component
+public class BustimeResponseParser {
+
+	private static final String BUSTIME_RESPONSE = "bustime-response";
+	private static final String ERROR = "error";
+
+	private final ObjectMapper objectMapper;
+	private final ObjectReader errorReader;
+
+	@Autowired
+	public BustimeResponseParser(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+		this.errorReader = objectMapper.readerFor(BustimeError.class);
+	}
+
+	/**
+	 * Parses a CTA API response.
+	 * 
+	 * @param body
+	 *            The response body. It is read but not closed.
+	 * @param field
+	 *            The name of the array under "bustime-response" that holds
+	 *            the data, e.g. "routes" or "prd".
+	 * @param type
+	 *            The model class that each element of the array is bound to.
+	 * @throws IOException
+	 *             if the body can not be read or is not valid Json.
+	 */
+	public <T> ParsedResponse<T> parse(InputStream body, String field, Class<T> type) throws IOException {
+
+		ObjectReader itemReader = objectMapper.readerFor(type);
+		List<T> items = new ArrayList<>();
+		List<BustimeError> errors = new ArrayList<>();
+
+		try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+			parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Expected a Json object in the Bustime response");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (BUSTIME_RESPONSE.equals(name) && value == JsonToken.START_OBJECT) {
+					readBustimeResponse(parser, field, itemReader, items, errors);
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+		return new ParsedResponse<>(items, errors);
+	}
+
+	private <T> void readBustimeResponse(JsonParser parser, String field, ObjectReader itemReader, List<T> items,
+			List<BustimeError> errors) throws IOException {
+
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if (value != JsonToken.START_ARRAY) {
+				parser.skipChildren();
+			} else if (field.equals(name)) {
+				readArray(parser, itemReader, items);
+			} else if (ERROR.equals(name)) {
+				readArray(parser, errorReader, errors);
+			} else {
+				parser.skipChildren();
+			}
+		}
+	}
+
+	private <T> void readArray(JsonParser parser, ObjectReader reader, List<T> into) throws IOException {
+		while (parser.nextToken() != JsonToken.END_ARRAY) {
+			into.add(reader.<T>readValue(parser));
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+import com.lamarjs.route_tracker.models.Stop;
+
+/**
+ * <p>
+ * An immutable, columnar copy of the bus network. Every distinct stop is
+ * stored once, in a stop table of primitive arrays sorted by stop id, and each
+ * direction only holds the indices of its stops in that table. Stop names are
+ * interned so that a name shared by several stops is held once.
+ * </p>
+ * <p>
+ * {@link CompactNetwork#getBusLines()} exposes the familiar
+ * {@link BusLine}/{@link Direction}/{@link Stop} graph as a read-only view.
+ * Every call hands out its own {@link BusLine} and {@link Direction} copies
+ * over unmodifiable lists, and the stop lists materialize a new {@link Stop}
+ * when an element is read, so a caller can not change the network seen by
+ * other threads. The long lived heap is the arrays rather than one object per
+ * stop per direction.
+ * </p>
+ * 
+ * @author Lamar J. Smith
+ */
+public final class CompactNetwork {
+
+	// The stop table; parallel arrays sorted by stpid.
+	private final int[] stpids;
+	private final double[] lats;
+	private final double[] lons;
+	private final String[] names;
+
+	private final List<BusLine> busLines;
+
+	private CompactNetwork(int[] stpids, double[] lats, double[] lons, String[] names, List<BusLine> busLines) {
+		this.stpids = stpids;
+		this.lats = lats;
+		this.lons = lons;
+		this.names = names;
+		this.busLines = busLines;
+	}
+
+	/**
+	 * Builds a compact copy of the given bus lines. Stops are deduplicated by
+	 * stop id; when the same id appears more than once the first occurrence
+	 * wins.
+	 */
+	public static CompactNetwork of(List<BusLine> source) {
+
+		TreeMap<Integer, Stop> distinct = new TreeMap<>();
+		for (BusLine line : source) {
+			if (line.getDirections() == null) {
+				continue;
+			}
+			for (Direction dir : line.getDirections()) {
+				if (dir.getStops() != null) {
+					dir.getStops().forEach(stop -> distinct.putIfAbsent(stop.getStpid(), stop));
+				}
+			}
+		}
+
+		int count = distinct.size();
+		int[] stpids = new int[count];
+		double[] lats = new double[count];
+		double[] lons = new double[count];
+		String[] names = new String[count];
+		Map<String, String> pool = new HashMap<>();
+		Map<Integer, Integer> indexOf = new HashMap<>(count * 2);
+
+		int i = 0;
+		for (Stop stop : distinct.values()) {
+			stpids[i] = stop.getStpid();
+			lats[i] = stop.getLat();
+			lons[i] = stop.getLon();
+			names[i] = intern(pool, stop.getStpnm());
+			indexOf.put(stop.getStpid(), i);
+			i++;
+		}
+
+		CompactNetwork network = new CompactNetwork(stpids, lats, lons, names, new ArrayList<>(source.size()));
+		for (BusLine line : source) {
+			List<Direction> directions = null;
+			if (line.getDirections() != null) {
+				directions = new ArrayList<>(line.getDirections().size());
+				for (Direction dir : line.getDirections()) {
+					List<Stop> stops = null;
+					if (dir.getStops() != null) {
+						stops = network.new StopList(
+								dir.getStops().stream().mapToInt(stop -> indexOf.get(stop.getStpid())).toArray());
+					}
+					directions.add(new Direction(intern(pool, dir.getDir()), stops));
+				}
+				directions = Collections.unmodifiableList(directions);
+			}
+			network.busLines.add(new BusLine(line.getRt(), line.getRtnm(), line.getRtclr(), directions));
+		}
+
+		return network;
+	}
+
+	private static String intern(Map<String, String> pool, String value) {
+		if (value == null) {
+			return null;
+		}
+		String existing = pool.putIfAbsent(value, value);
+		return existing == null ? value : existing;
+	}
+
+	/**
+	 * @return The bus lines of this network as a read-only view over the stop
+	 *         table. The lines and directions are copies owned by the caller.
+	 */
+	public List<BusLine> getBusLines() {
+		List<BusLine> copies = new ArrayList<>(busLines.size());
+		for (BusLine line : busLines) {
+			List<Direction> directions = null;
+			if (line.getDirections() != null) {
+				directions = new ArrayList<>(line.getDirections().size());
+				for (Direction dir : line.getDirections()) {
+					directions.add(new Direction(dir.getDir(), dir.getStops()));
+				}
+				directions = Collections.unmodifiableList(directions);
+			}
+			copies.add(new BusLine(line.getRt(), line.getRtnm(), line.getRtclr(), directions));
+		}
+		return Collections.unmodifiableList(copies);
+	}
+
+	/**
+	 * @return The number of distinct stops in the network.
+	 */
+	public int getStopCount() {
+		return stpids.length;
+	}
+
+	/**
+	 * @return The position of the given stop id in the stop table, or a
+	 *         negative number if the network does not contain it.
+	 */
+	public int indexOf(int stpid) {
+		return Arrays.binarySearch(stpids, stpid);
+	}
+
+	public int getStpid(int index) {
+		return stpids[index];
+	}
+
+	public double getLat(int index) {
+		return lats[index];
+	}
+
+	public double getLon(int index) {
+		return lons[index];
+	}
+
+	public String getName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @return A new {@link Stop} for the given position in the stop table.
+	 */
+	public Stop getStop(int index) {
+		return new Stop(stpids[index], names[index], lats[index], lons[index]);
+	}
+
+	/**
+	 * A direction's stops, held as indices into the stop table.
+	 */
+	private class StopList extends AbstractList<Stop> implements RandomAccess {
+		private final int[] indices;
+
+		StopList(int[] indices) {
+			this.indices = indices;
+		}
+
+		@Override
+		public Stop get(int index) {
+			return getStop(indices[index]);
+		}
+
+		@Override
+		public int size() {
+			return indices.length;
+		}
+	}
+}
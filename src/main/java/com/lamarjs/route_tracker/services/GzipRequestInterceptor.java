@@ -0,0 +1,85 @@
+package com.lamarjs.route_tracker.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Asks the CTA API for gzip compressed responses and transparently inflates
+ * them. The HTTP client's own decompression is turned off (see
+ * {@link BustimeClientConfiguration#bustimeHttpClient()}), so the body stream
+ * is wrapped here whenever the response declares a gzip content encoding.
+ * 
+ * @author Lamar J. Smith
+ */
+public class GzipRequestInterceptor implements ClientHttpRequestInterceptor {
+
+	private static final String GZIP = "gzip";
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+
+		request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, GZIP);
+		ClientHttpResponse response = execution.execute(request, body);
+
+		String contentEncoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+		if (contentEncoding != null && contentEncoding.toLowerCase().contains(GZIP)) {
+			return new GzipClientHttpResponse(response);
+		}
+		return response;
+	}
+
+	/**
+	 * Delegates to the wrapped response, inflating its body on the way out.
+	 */
+	private static class GzipClientHttpResponse implements ClientHttpResponse {
+
+		private final ClientHttpResponse delegate;
+		private InputStream body;
+
+		GzipClientHttpResponse(ClientHttpResponse delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (body == null) {
+				body = new GZIPInputStream(delegate.getBody());
+			}
+			return body;
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return delegate.getHeaders();
+		}
+
+		@Override
+		public HttpStatus getStatusCode() throws IOException {
+			return delegate.getStatusCode();
+		}
+
+		@Override
+		public int getRawStatusCode() throws IOException {
+			return delegate.getRawStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return delegate.getStatusText();
+		}
+
+		@Override
+		public void close() {
+			delegate.close();
+		}
+	}
+}
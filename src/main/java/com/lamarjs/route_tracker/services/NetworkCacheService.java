@@ -0,0 +1,214 @@
+package com.lamarjs.route_tracker.services;
+
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.repositories.NetworkSnapshotRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds the fully initialized bus network ({@link BusLine} -> Direction ->
+ * Stop) in memory and rebuilds it in the background once it is older than
+ * bustime.network.refresh-interval-ms. Readers always get the most recently
+ * published {@link NetworkSnapshot}; a refresh swaps the new snapshot in
+ * atomically once it is complete, so reads never wait on the CTA API.
+ * <p>
+ * Every refreshed snapshot is also saved through
+ * {@link NetworkSnapshotRepository}. On startup the saved snapshot is restored
+ * and served straight away, and is only rebuilt from the CTA API once it is
+ * due for a refresh.
+ * </p>
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class NetworkCacheService {
+
+	private final NetworkInitializationService initializationService;
+	private final NetworkSnapshotRepository snapshotRepository;
+	private final long refreshInterval;
+	private final long fullRefreshInterval;
+	private volatile long lastFullRefresh;
+	private volatile boolean refreshFailing;
+	private final ApplicationEventPublisher eventPublisher;
+	private final AtomicReference<NetworkSnapshot> snapshot = new AtomicReference<>();
+
+	@Autowired
+	public NetworkCacheService(NetworkInitializationService initializationService,
+			NetworkSnapshotRepository snapshotRepository,
+			@Value("${bustime.network.refresh-interval-ms:21600000}") long refreshInterval,
+			@Value("${bustime.network.full-refresh-interval-ms:86400000}") long fullRefreshInterval,
+			ApplicationEventPublisher eventPublisher) {
+		this.initializationService = initializationService;
+		this.snapshotRepository = snapshotRepository;
+		this.refreshInterval = refreshInterval;
+		this.fullRefreshInterval = fullRefreshInterval;
+		this.eventPublisher = eventPublisher;
+	}
+
+	/**
+	 * Publishes the snapshot saved by a previous run, if there is one.
+	 */
+	@PostConstruct
+	public void restore() {
+		try {
+			snapshotRepository.load().ifPresent(saved -> {
+				publish(saved);
+				log.info("[restore()] - Restored network snapshot with {} BusLines, {}ms old",
+						saved.getBusLines().size(), saved.getAge());
+			});
+		} catch (DataAccessException e) {
+			log.error("[restore()] - Could not restore the saved network snapshot: {}", e.toString());
+		}
+	}
+
+	/**
+	 * @return The most recently published snapshot, or empty if the network
+	 *         has not been loaded yet.
+	 */
+	public Optional<NetworkSnapshot> getSnapshot() {
+		return Optional.ofNullable(snapshot.get());
+	}
+
+	/**
+	 * @return true if the last refresh could not reach the CTA API, so the
+	 *         current snapshot is being served past its refresh interval.
+	 */
+	public boolean isStale() {
+		return refreshFailing;
+	}
+
+	/**
+	 * Refreshes the network if it has not been loaded yet, or if the current
+	 * snapshot is older than the refresh interval.
+	 */
+	@Scheduled(initialDelayString = "${bustime.network.initial-delay-ms:0}", fixedDelayString = "${bustime.network.check-interval-ms:60000}")
+	public void refreshIfStale() {
+		NetworkSnapshot current = snapshot.get();
+		if (current == null || current.getAge() >= refreshInterval) {
+			refresh();
+		}
+	}
+
+	/**
+	 * Rebuilds the network from the CTA API, publishes it and saves it. If the
+	 * routes request fails the current snapshot is kept. Routes that fail to
+	 * initialize keep their version from the current snapshot, when there is
+	 * one.
+	 * <p>
+	 * Stops are only requested again for routes that are new or whose
+	 * directions changed since the current snapshot (see
+	 * {@link NetworkInitializationService#loadChanges(NetworkSnapshot)}),
+	 * except for a full rebuild on the first refresh and then once every
+	 * bustime.network.full-refresh-interval-ms, which also picks up stop
+	 * changes within unchanged directions.
+	 * </p>
+	 */
+	public void refresh() {
+
+		NetworkLoadResult result;
+		long start = System.currentTimeMillis();
+		NetworkSnapshot previous = snapshot.get();
+		boolean full = previous == null || start - lastFullRefresh >= fullRefreshInterval;
+
+		try {
+			result = full ? initializationService.loadNetwork() : initializationService.loadChanges(previous);
+		} catch (RestClientException | MalformedURLException | BusTimeErrorReceivedException | URISyntaxException e) {
+			log.error("[refresh()] - Network refresh failed, keeping the current snapshot: {}", e.toString());
+			refreshFailing = true;
+			return;
+		}
+		refreshFailing = false;
+
+		NetworkSnapshot next = merge(result, previous);
+		if (full) {
+			lastFullRefresh = start;
+			logChangedRoutes(previous, next);
+		}
+		publish(next);
+
+		try {
+			snapshotRepository.save(next);
+		} catch (DataAccessException e) {
+			log.error("[refresh()] - Could not save the network snapshot: {}", e.toString());
+		}
+
+		log.info("[refresh()] - Network {} refreshed in {}ms with {} failed routes", full ? "fully" : "incrementally",
+				System.currentTimeMillis() - start, result.getFailures().size());
+	}
+
+	/**
+	 * Logs how many routes a full rebuild found to be different, down to their
+	 * stops, which shows how much an incremental refresh would have missed.
+	 */
+	private void logChangedRoutes(NetworkSnapshot previous, NetworkSnapshot next) {
+		if (previous == null) {
+			return;
+		}
+		Map<String, Long> before = new HashMap<>();
+		previous.getBusLines().forEach(line -> before.put(line.getRt(), NetworkFingerprint.ofBusLine(line)));
+		long changed = next.getBusLines().stream()
+				.filter(line -> !Long.valueOf(NetworkFingerprint.ofBusLine(line)).equals(before.get(line.getRt())))
+				.count();
+		log.info("[refresh()] - Full refresh found {} new or changed routes", changed);
+	}
+
+	/**
+	 * Atomically replaces the current snapshot and announces it with a
+	 * {@link NetworkSnapshotPublishedEvent}.
+	 */
+	public void publish(NetworkSnapshot next) {
+		snapshot.set(next);
+		eventPublisher.publishEvent(new NetworkSnapshotPublishedEvent(this, next));
+	}
+
+	private NetworkSnapshot merge(NetworkLoadResult result, NetworkSnapshot previous) {
+
+		Map<String, BusLine> previousLines = new HashMap<>();
+		if (previous != null) {
+			for (BusLine line : previous.getBusLines()) {
+				if (!previous.getFailures().containsKey(line.getRt())) {
+					previousLines.put(line.getRt(), line);
+				}
+			}
+		}
+
+		List<BusLine> busLines = new ArrayList<>(result.getBusLines().size());
+		Map<String, String> failures = new HashMap<>();
+		for (BusLine line : result.getBusLines()) {
+			String failure = result.getFailures().get(line.getRt());
+			if (failure == null) {
+				busLines.add(line);
+			} else if (previousLines.containsKey(line.getRt())) {
+				busLines.add(previousLines.get(line.getRt()));
+			} else {
+				busLines.add(line);
+				failures.put(line.getRt(), failure);
+			}
+		}
+
+		return new NetworkSnapshot(Collections.unmodifiableList(busLines), Collections.unmodifiableMap(failures),
+				System.currentTimeMillis());
+	}
+}
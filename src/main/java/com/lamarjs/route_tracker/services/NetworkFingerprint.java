@@ -0,0 +1,89 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.List;
+
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+import com.lamarjs.route_tracker.models.Stop;
+
+/**
+ * 64 bit FNV-1a fingerprints of the parts of the network returned by each CTA
+ * API call, used to tell whether a route has changed between refreshes.
+ * 
+ * @author Lamar J. Smith
+ */
+public final class NetworkFingerprint {
+
+	private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long PRIME = 0x100000001b3L;
+
+	private long hash = OFFSET_BASIS;
+
+	private NetworkFingerprint() {
+	}
+
+	/**
+	 * @return The fingerprint of a route as listed by getroutes: its code,
+	 *         name and color.
+	 */
+	public static long ofRoute(BusLine line) {
+		return new NetworkFingerprint().add(line.getRt()).add(line.getRtnm()).add(line.getRtclr()).hash;
+	}
+
+	/**
+	 * @return The fingerprint of a route's directions as returned by
+	 *         getdirections, i.e. their names only.
+	 */
+	public static long ofDirections(List<Direction> directions) {
+		NetworkFingerprint fingerprint = new NetworkFingerprint();
+		if (directions != null) {
+			directions.forEach(dir -> fingerprint.add(dir.getDir()));
+		}
+		return fingerprint.hash;
+	}
+
+	/**
+	 * @return The fingerprint of a direction's stops as returned by getstops.
+	 */
+	public static long ofStops(List<Stop> stops) {
+		NetworkFingerprint fingerprint = new NetworkFingerprint();
+		if (stops != null) {
+			stops.forEach(stop -> fingerprint.add(stop.getStpid()).add(stop.getStpnm())
+					.add(Double.doubleToLongBits(stop.getLat())).add(Double.doubleToLongBits(stop.getLon())));
+		}
+		return fingerprint.hash;
+	}
+
+	/**
+	 * @return The fingerprint of a whole route: its header, directions and the
+	 *         stops of every direction.
+	 */
+	public static long ofBusLine(BusLine line) {
+		NetworkFingerprint fingerprint = new NetworkFingerprint().add(ofRoute(line))
+				.add(ofDirections(line.getDirections()));
+		if (line.getDirections() != null) {
+			line.getDirections().forEach(dir -> fingerprint.add(ofStops(dir.getStops())));
+		}
+		return fingerprint.hash;
+	}
+
+	private NetworkFingerprint add(String value) {
+		if (value == null) {
+			return add(0L);
+		}
+		for (int i = 0; i < value.length(); i++) {
+			hash = (hash ^ value.charAt(i)) * PRIME;
+		}
+		// Separate values so that "ab","c" and "a","bc" differ.
+		hash = (hash ^ 0xff) * PRIME;
+		return this;
+	}
+
+	private NetworkFingerprint add(long value) {
+		for (int i = 0; i < 8; i++) {
+			hash = (hash ^ (value & 0xff)) * PRIME;
+			value >>>= 8;
+		}
+		return this;
+	}
+}
@@ -0,0 +1,203 @@
+package com.lamarjs.route_tracker.services;
+
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Initializes the directions and stops of many {@link BusLine} objects at
+ * once. The directions request for each BusLine, and the stops request for
+ * each of its directions, are fanned out across a fixed size executor so that
+ * no more than bustime.fanout.concurrency requests are ever in flight to the
+ * CTA API at the same time.
+ * <p>
+ * A failed request only affects the BusLine it belongs to. The failure is
+ * recorded against that route in the returned {@link NetworkLoadResult} and
+ * every other BusLine is still initialized.
+ * </p>
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class NetworkInitializationService {
+
+	private final BustimeAPIRequest requestService;
+	private final ExecutorService executor;
+
+	@Autowired
+	public NetworkInitializationService(BustimeAPIRequest requestService,
+			@Value("${bustime.fanout.concurrency:8}") int concurrency) {
+		this.requestService = requestService;
+		this.executor = Executors.newFixedThreadPool(concurrency, new CustomizableThreadFactory("network-init-"));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Requests the list of all routes from the CTA API and then initializes
+	 * each of them.
+	 * 
+	 * @see NetworkInitializationService#initialize(List)
+	 * @throws BusTimeErrorReceivedException
+	 *             if the routes request itself returns an error message.
+	 */
+	public NetworkLoadResult loadNetwork()
+			throws BusTimeErrorReceivedException, MalformedURLException, RestClientException, URISyntaxException {
+		return initialize(requestService.requestRoutes());
+	}
+
+	/**
+	 * Requests the list of all routes from the CTA API, and the directions of
+	 * each of them, and only requests stops where they may have changed since
+	 * the given snapshot. A route that was fully initialized in the previous
+	 * snapshot, and whose directions fingerprint
+	 * ({@link NetworkFingerprint#ofDirections(List)}) is unchanged, keeps its
+	 * previous stops. New routes, routes that failed last time and routes whose
+	 * directions changed have their stops requested again. Routes that are no
+	 * longer listed are dropped.
+	 * <p>
+	 * Changes to the stops of a direction whose name did not change are only
+	 * picked up by a full {@link NetworkInitializationService#loadNetwork()}.
+	 * </p>
+	 * 
+	 * @throws BusTimeErrorReceivedException
+	 *             if the routes request itself returns an error message.
+	 */
+	public NetworkLoadResult loadChanges(NetworkSnapshot previous)
+			throws BusTimeErrorReceivedException, MalformedURLException, RestClientException, URISyntaxException {
+
+		List<BusLine> routes = requestService.requestRoutes();
+
+		Map<String, BusLine> known = new HashMap<>();
+		for (BusLine line : previous.getBusLines()) {
+			if (line.getDirections() != null && !previous.getFailures().containsKey(line.getRt())) {
+				known.put(line.getRt(), line);
+			}
+		}
+
+		Map<String, String> failures = new ConcurrentHashMap<>();
+		Set<String> restopped = ConcurrentHashMap.newKeySet();
+		CompletableFuture<?>[] lineFutures = routes.stream()
+				.map(route -> initializeAsync(route, known.get(route.getRt()), failures, restopped))
+				.toArray(CompletableFuture[]::new);
+		CompletableFuture.allOf(lineFutures).join();
+
+		long removed = previous.getBusLines().stream()
+				.filter(line -> routes.stream().noneMatch(route -> route.getRt().equals(line.getRt()))).count();
+		log.info("[loadChanges()] - {} routes unchanged, {} new or changed, {} removed, {} failed",
+				routes.size() - restopped.size(), restopped.size(), removed, failures.size());
+
+		return new NetworkLoadResult(routes, failures);
+	}
+
+	/**
+	 * Initializes the directions, and then the stops of each direction, for
+	 * every BusLine given. Blocks until every request has either completed or
+	 * failed.
+	 * 
+	 * @param busLines
+	 *            BusLine objects holding at least their route code.
+	 * @return The same BusLine objects, along with any per route failures.
+	 */
+	public NetworkLoadResult initialize(List<BusLine> busLines) {
+
+		Map<String, String> failures = new ConcurrentHashMap<>();
+
+		CompletableFuture<?>[] lineFutures = busLines.stream().map(line -> initializeAsync(line, null, failures, null))
+				.toArray(CompletableFuture[]::new);
+		CompletableFuture.allOf(lineFutures).join();
+
+		if (!failures.isEmpty()) {
+			log.warn("[initialize()] - {} of {} BusLines failed to initialize: {}", failures.size(), busLines.size(),
+					failures);
+		}
+		return new NetworkLoadResult(busLines, failures);
+	}
+
+	/**
+	 * @param previous
+	 *            The same route from an earlier snapshot, whose stops are
+	 *            reused if the directions have not changed, or null.
+	 * @param restopped
+	 *            Collects the routes whose stops were requested, or null.
+	 */
+	private CompletableFuture<Void> initializeAsync(BusLine line, BusLine previous, Map<String, String> failures,
+			Set<String> restopped) {
+
+		return CompletableFuture.runAsync(() -> {
+			try {
+				line.initializeDirections(requestService);
+			} catch (MalformedURLException | BusTimeErrorReceivedException e) {
+				throw new CompletionException(e);
+			}
+		}, executor).thenCompose(ignored -> {
+			if (previous != null && NetworkFingerprint.ofDirections(previous.getDirections()) == NetworkFingerprint
+					.ofDirections(line.getDirections())) {
+				line.setDirections(previous.getDirections());
+				return CompletableFuture.completedFuture(null);
+			}
+			if (restopped != null) {
+				restopped.add(line.getRt());
+			}
+			CompletableFuture<?>[] stopFutures = line.getDirections().stream()
+					.map(dir -> initializeStopsAsync(line, dir, failures)).toArray(CompletableFuture[]::new);
+			return CompletableFuture.allOf(stopFutures);
+		}).exceptionally(e -> {
+			recordFailure(failures, line.getRt(), "directions: " + rootMessage(e));
+			return null;
+		});
+	}
+
+	private CompletableFuture<Void> initializeStopsAsync(BusLine line, Direction dir, Map<String, String> failures) {
+
+		return CompletableFuture.runAsync(() -> {
+			try {
+				dir.initializeStops(requestService, line.getRt());
+			} catch (MalformedURLException | BusTimeErrorReceivedException e) {
+				throw new CompletionException(e);
+			}
+		}, executor).exceptionally(e -> {
+			recordFailure(failures, line.getRt(), dir.getDir() + " stops: " + rootMessage(e));
+			return null;
+		});
+	}
+
+	private void recordFailure(Map<String, String> failures, String rt, String message) {
+		log.error("[initialize()] - Failed to initialize BusLine: {}. {}", rt, message);
+		failures.merge(rt, message, (existing, added) -> existing + "; " + added);
+	}
+
+	private String rootMessage(Throwable e) {
+		Throwable cause = e;
+		while (cause instanceof CompletionException && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		return cause.toString();
+	}
+}
@@ -0,0 +1,23 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.List;
+import java.util.Map;
+
+import com.lamarjs.route_tracker.models.BusLine;
+
+import lombok.Value;
+
+/**
+ * The outcome of initializing a set of {@link BusLine} objects. Every BusLine
+ * that was requested is included in busLines, whether or not it was fully
+ * initialized. Routes that could not be fully initialized are listed in
+ * failures, keyed by route code, with a description of what went wrong.
+ * 
+ * @author Lamar J. Smith
+ */
+@Value
+public class NetworkLoadResult {
+
+	private final List<BusLine> busLines;
+	private final Map<String, String> failures; // route code -> error message
+}
@@ -0,0 +1,46 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.Map;
+
+import lombok.Value;
+
+/**
+ * The /getbuslines response for one {@link NetworkSnapshot}, serialized once:
+ * the JSON bytes, a gzip'd copy of them, and a strong entity tag.
+ * 
+ * @author Lamar J. Smith
+ */
+@Value
+public class NetworkPayload {
+
+	private final NetworkSnapshot snapshot;
+	private final byte[] json;
+	private final byte[] gzip;
+	private final String etag; // quoted, e.g. "9f86d081884c7d65"
+	private final Map<String, String> failures; // route code -> error message
+
+	/**
+	 * @return The entity tag of the gzip'd representation. It differs from
+	 *         {@link NetworkPayload#getEtag()} because the bytes differ.
+	 */
+	public String getGzipEtag() {
+		return etag.substring(0, etag.length() - 1) + "-gzip\"";
+	}
+
+	/**
+	 * @return true if an If-None-Match header value names either
+	 *         representation of this payload.
+	 */
+	public boolean matches(String ifNoneMatch) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			if (tag.equals("*") || tag.equals(etag) || tag.equals(getGzipEtag())) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,108 @@
+package com.lamarjs.route_tracker.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serializes the bus lines of each published {@link NetworkSnapshot} once, so
+ * that /getbuslines can write prepared bytes instead of running Jackson over
+ * the whole network on every request.
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class NetworkPayloadService {
+
+	private final NetworkCacheService networkCache;
+	private final ObjectMapper objectMapper;
+	private volatile NetworkPayload payload;
+
+	@Autowired
+	public NetworkPayloadService(NetworkCacheService networkCache, ObjectMapper objectMapper) {
+		this.networkCache = networkCache;
+		this.objectMapper = objectMapper;
+	}
+
+	@PostConstruct
+	public void initialize() {
+		networkCache.getSnapshot().ifPresent(this::rebuild);
+	}
+
+	@EventListener
+	public void onNetworkPublished(NetworkSnapshotPublishedEvent event) {
+		rebuild(event.getSnapshot());
+	}
+
+	/**
+	 * @return The payload for the current snapshot, or an empty Optional if the
+	 *         network has not been loaded yet.
+	 */
+	public Optional<NetworkPayload> getPayload() {
+		Optional<NetworkSnapshot> snapshot = networkCache.getSnapshot();
+		if (!snapshot.isPresent()) {
+			return Optional.empty();
+		}
+
+		NetworkPayload current = payload;
+		if (current == null || current.getSnapshot() != snapshot.get()) {
+			current = rebuild(snapshot.get());
+		}
+		return Optional.of(current);
+	}
+
+	synchronized NetworkPayload rebuild(NetworkSnapshot snapshot) {
+		NetworkPayload current = payload;
+		if (current != null && current.getSnapshot() == snapshot) {
+			return current;
+		}
+
+		long start = System.currentTimeMillis();
+		try {
+			byte[] json = objectMapper.writeValueAsBytes(snapshot.getBusLines());
+
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4);
+			try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+				gzip.write(json);
+			}
+
+			current = new NetworkPayload(snapshot, json, compressed.toByteArray(), etag(json),
+					snapshot.getFailures());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		payload = current;
+		log.info("[rebuild()] - Serialized network to {} bytes ({} gzip'd) in {}ms", current.getJson().length,
+				current.getGzip().length, System.currentTimeMillis() - start);
+		return current;
+	}
+
+	private static String etag(byte[] json) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+			StringBuilder tag = new StringBuilder("\"");
+			for (int i = 0; i < 16; i++) {
+				tag.append(String.format("%02x", digest[i]));
+			}
+			return tag.append('"').toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
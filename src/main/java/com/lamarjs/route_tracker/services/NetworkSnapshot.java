@@ -0,0 +1,46 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.List;
+import java.util.Map;
+
+import com.lamarjs.route_tracker.models.BusLine;
+
+import lombok.Value;
+
+/**
+ * A fully initialized copy of the CTA bus network, as held by
+ * {@link NetworkCacheService}. A snapshot is never modified once it has been
+ * published; a refresh builds and publishes a new one. The network itself is
+ * kept as a {@link CompactNetwork}, so that holding more than one snapshot
+ * during a refresh stays cheap.
+ * 
+ * @author Lamar J. Smith
+ */
+@Value
+public class NetworkSnapshot {
+
+	private final CompactNetwork network;
+	private final Map<String, String> failures; // route code -> error message
+	private final long loadedAt; // epoch millis when the snapshot was built
+
+	public NetworkSnapshot(List<BusLine> busLines, Map<String, String> failures, long loadedAt) {
+		this.network = CompactNetwork.of(busLines);
+		this.failures = failures;
+		this.loadedAt = loadedAt;
+	}
+
+	/**
+	 * @return The bus lines of this snapshot, as a read-only view over its
+	 *         {@link CompactNetwork}.
+	 */
+	public List<BusLine> getBusLines() {
+		return network.getBusLines();
+	}
+
+	/**
+	 * @return How long ago, in milliseconds, this snapshot was built.
+	 */
+	public long getAge() {
+		return System.currentTimeMillis() - loadedAt;
+	}
+}
@@ -0,0 +1,29 @@
+package com.lamarjs.route_tracker.services;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published by {@link NetworkCacheService} each time a new
+ * {@link NetworkSnapshot} replaces the current one, so that anything derived
+ * from the network can be rebuilt.
+ * 
+ * @author Lamar J. Smith
+ */
+public class NetworkSnapshotPublishedEvent extends ApplicationEvent {
+
+	/**
+	 * Generated serialVersionUID
+	 */
+	private static final long serialVersionUID = 3349862364861302283L;
+
+	public NetworkSnapshotPublishedEvent(Object source, NetworkSnapshot snapshot) {
+		super(source);
+		this.snapshot = snapshot;
+	}
+
+	private final transient NetworkSnapshot snapshot;
+
+	public NetworkSnapshot getSnapshot() {
+		return snapshot;
+	}
+}
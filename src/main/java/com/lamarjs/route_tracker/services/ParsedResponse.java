@@ -0,0 +1,29 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.List;
+
+import com.lamarjs.route_tracker.models.BustimeError;
+
+import lombok.Value;
+
+/**
+ * The contents of a CTA API response as read by {@link BustimeResponseParser}:
+ * the objects from the requested array, and any error entries that came with
+ * them.
+ * 
+ * @author Lamar J. Smith
+ */
+@Value
+public class ParsedResponse<T> {
+
+	private final List<T> items;
+	private final List<BustimeError> errors;
+
+	/**
+	 * @return The message of the first error entry, or null if there were
+	 *         none.
+	 */
+	public String getFirstError() {
+		return errors.isEmpty() ? null : errors.get(0).getMsg();
+	}
+}
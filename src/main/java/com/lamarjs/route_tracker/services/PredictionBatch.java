@@ -0,0 +1,39 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.List;
+import java.util.Map;
+
+import com.lamarjs.route_tracker.models.Prediction;
+
+import lombok.Value;
+
+/**
+ * The response to a multi-stop predictions request. The CTA API answers such
+ * a request with the predictions for every stop that has them, plus an error
+ * entry for each stop that does not (e.g. "No arrival times").
+ * 
+ * @author Lamar J. Smith
+ */
+@Value
+public class PredictionBatch {
+
+	private final List<Prediction> predictions;
+	private final Map<String, String> stopErrors; // stpid -> error message
+
+	/**
+	 * @return The error returned for the given stop, or null. Stop ids in
+	 *         the CTA's errors are matched as numbers.
+	 */
+	public String getStopError(int stpid) {
+		for (Map.Entry<String, String> error : stopErrors.entrySet()) {
+			try {
+				if (Integer.parseInt(error.getKey().trim()) == stpid) {
+					return error.getValue();
+				}
+			} catch (NumberFormatException e) {
+				// Not a stop the request asked for.
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,232 @@
+package com.lamarjs.route_tracker.services;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.models.Prediction;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Packs single-stop prediction lookups from many callers into multi-stop
+ * getpredictions requests. Lookups that arrive within
+ * bustime.predictions.batch-window-ms of each other are sent together, up to
+ * {@link PredictionBatcher#MAX_STOPS_PER_REQUEST} stops per request, and the
+ * returned predictions are handed back to each caller by stpid.
+ * <p>
+ * Only lookups for a single stop on every route, with a top of at most
+ * bustime.predictions.batch-max-per-stop, are batched. Anything else is passed
+ * straight through to
+ * {@link BustimeAPIRequest#requestPredictions(String, String, int)}, since the
+ * route filter and a larger top could not be honored from a shared request.
+ * Setting the batch window to 0 disables batching.
+ * </p>
+ * <p>
+ * CTA applies top to the request as a whole rather than to each stop. A batch
+ * asks for batch-max-per-stop predictions per stop in total, so a busy stop can
+ * still take more than its share and leave a quieter stop in the same batch
+ * with fewer predictions than a direct request would have returned.
+ * </p>
+ * <p>
+ * A batch is sent with the latest deadline of the lookups in it, so that it
+ * is not given up on while any caller is still waiting.
+ * </p>
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class PredictionBatcher {
+
+	/**
+	 * The CTA API accepts at most this many stop ids in one predictions
+	 * request.
+	 */
+	public static final int MAX_STOPS_PER_REQUEST = 10;
+
+	private final BustimeAPIRequest requestService;
+	private final long window;
+	private final int maxPerStop;
+	private final ScheduledExecutorService timer;
+	private final ExecutorService executor;
+
+	private final Object lock = new Object();
+	private Map<Integer, CompletableFuture<List<Prediction>>> pending = new LinkedHashMap<>();
+	private long pendingDeadline;
+	private ScheduledFuture<?> scheduledFlush;
+
+	@Autowired
+	public PredictionBatcher(BustimeAPIRequest requestService,
+			@Value("${bustime.predictions.batch-window-ms:5}") long window,
+			@Value("${bustime.predictions.batch-max-per-stop:10}") int maxPerStop,
+			@Value("${bustime.predictions.batch-concurrency:4}") int concurrency) {
+		this.requestService = requestService;
+		this.window = window;
+		this.maxPerStop = maxPerStop;
+		this.timer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("prediction-batch-timer-"));
+		this.executor = Executors.newFixedThreadPool(concurrency, new CustomizableThreadFactory("prediction-batch-"));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		timer.shutdownNow();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Returns the predictions for the given stops. A single stop on every
+	 * route is looked up as part of the next batch; anything else is
+	 * requested directly.
+	 * 
+	 * @see BustimeAPIRequest#requestPredictions(String, String, int)
+	 */
+	public List<Prediction> getPredictions(String stpids, String rts, int top)
+			throws MalformedURLException, BusTimeErrorReceivedException {
+		try {
+			return getPredictionsAsync(stpids, rts, top).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof BusTimeErrorReceivedException) {
+				throw (BusTimeErrorReceivedException) e.getCause();
+			}
+			if (e.getCause() instanceof MalformedURLException) {
+				throw (MalformedURLException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Asynchronous variant of
+	 * {@link PredictionBatcher#getPredictions(String, String, int)}.
+	 */
+	public CompletableFuture<List<Prediction>> getPredictionsAsync(String stpids, String rts, int top) {
+		return getPredictionsAsync(stpids, rts, top, RequestHedger.NO_DEADLINE);
+	}
+
+	/**
+	 * Same as
+	 * {@link PredictionBatcher#getPredictionsAsync(String, String, int)}, for
+	 * a caller that gives up at the given deadline (epoch millis).
+	 */
+	public CompletableFuture<List<Prediction>> getPredictionsAsync(String stpids, String rts, int top,
+			long deadline) {
+
+		List<String> stops = split(stpids);
+		if (window <= 0 || stops.size() != 1 || !split(rts).isEmpty() || top > maxPerStop) {
+			return requestService.requestPredictionsAsync(stpids, rts, top, deadline);
+		}
+
+		int stpid;
+		try {
+			stpid = PredictionKey.parseStpid(stops.get(0));
+		} catch (IllegalArgumentException e) {
+			CompletableFuture<List<Prediction>> rejected = new CompletableFuture<>();
+			rejected.completeExceptionally(e);
+			return rejected;
+		}
+		return enqueue(stpid, deadline)
+				.thenApply(predictions -> predictions.stream().limit(top).collect(Collectors.toList()));
+	}
+
+	private CompletableFuture<List<Prediction>> enqueue(int stpid, long deadline) {
+		synchronized (lock) {
+			CompletableFuture<List<Prediction>> lookup = pending.computeIfAbsent(stpid,
+					key -> new CompletableFuture<>());
+			pendingDeadline = Math.max(pendingDeadline, deadline);
+
+			if (pending.size() >= MAX_STOPS_PER_REQUEST) {
+				flush();
+			} else if (scheduledFlush == null) {
+				scheduledFlush = timer.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+			}
+			return lookup;
+		}
+	}
+
+	private void flush() {
+		Map<Integer, CompletableFuture<List<Prediction>>> batch;
+		long deadline;
+		synchronized (lock) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			batch = pending;
+			deadline = pendingDeadline;
+			pending = new LinkedHashMap<>();
+			pendingDeadline = 0;
+			if (scheduledFlush != null) {
+				scheduledFlush.cancel(false);
+				scheduledFlush = null;
+			}
+		}
+		executor.execute(() -> send(batch, deadline));
+	}
+
+	private void send(Map<Integer, CompletableFuture<List<Prediction>>> batch, long deadline) {
+
+		String stpids = batch.keySet().stream().map(String::valueOf).collect(Collectors.joining(","));
+		log.debug("[send()] - Requesting predictions for {} stops: {}", batch.size(), stpids);
+
+		CompletableFuture<PredictionBatch> response;
+		try {
+			response = requestService.requestPredictionBatchAsync(stpids, batch.size() * maxPerStop, deadline);
+		} catch (RuntimeException e) {
+			response = new CompletableFuture<>();
+			response.completeExceptionally(e);
+		}
+		response.whenComplete((answer, e) -> {
+			if (e != null) {
+				Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+				batch.values().forEach(lookup -> lookup.completeExceptionally(cause));
+			} else {
+				complete(batch, answer);
+			}
+		});
+	}
+
+	private void complete(Map<Integer, CompletableFuture<List<Prediction>>> batch, PredictionBatch response) {
+
+		Map<Integer, List<Prediction>> byStop = response.getPredictions().stream()
+				.collect(Collectors.groupingBy(Prediction::getStpid));
+
+		batch.forEach((stpid, lookup) -> {
+			String error = response.getStopError(stpid);
+			if (error != null) {
+				lookup.completeExceptionally(new BusTimeErrorReceivedException(error));
+			} else {
+				lookup.complete(byStop.getOrDefault(stpid, Collections.<Prediction>emptyList()));
+			}
+		});
+	}
+
+	private static List<String> split(String values) {
+		if (values == null) {
+			return Collections.emptyList();
+		}
+		List<String> split = new ArrayList<>();
+		Arrays.stream(values.split(",")).map(String::trim).filter(value -> !value.isEmpty()).distinct()
+				.forEach(split::add);
+		return split;
+	}
+}
@@ -0,0 +1,224 @@
+package com.lamarjs.route_tracker.services;
+
+import java.net.MalformedURLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.models.Prediction;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A short lived cache in front of
+ * {@link PredictionBatcher#getPredictions(String, String, int)}. Results
+ * are cached per {@link PredictionKey} for bustime.predictions.cache-ttl-ms.
+ * <p>
+ * Concurrent misses for the same key are coalesced: the first caller sends the
+ * upstream request and every other caller waits for and shares its result,
+ * so at most one request per key is ever in flight. Error messages returned by
+ * the CTA API (e.g. "No arrival times") are cached the same way as
+ * predictions.
+ * </p>
+ * <p>
+ * Countdowns (prdctdn) are recomputed from prdtm each time predictions are
+ * served, so a cached entry stays correct as the minutes roll over.
+ * </p>
+ * <p>
+ * Entries are kept for bustime.predictions.stale-ttl-ms after they expire. If
+ * the CTA API cannot be reached, or the {@link UpstreamGuard} circuit breaker
+ * is open, such an entry is served instead of failing, marked stale in the
+ * {@link PredictionResult}. The next request after the breaker lets calls
+ * through again revalidates it.
+ * </p>
+ * <p>
+ * A coalesced upstream request carries the deadline of the caller that started
+ * it; callers that join it later share its outcome.
+ * </p>
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class PredictionCacheService {
+
+	private final PredictionBatcher batcher;
+	private final UpstreamGuard upstreamGuard;
+	private final long ttl;
+	private final long staleTtl;
+	private final Map<PredictionKey, CachedPredictions> cache = new ConcurrentHashMap<>();
+	private final Map<PredictionKey, CompletableFuture<CachedPredictions>> inFlight = new ConcurrentHashMap<>();
+
+	@Autowired
+	public PredictionCacheService(PredictionBatcher batcher, UpstreamGuard upstreamGuard,
+			@Value("${bustime.predictions.cache-ttl-ms:15000}") long ttl,
+			@Value("${bustime.predictions.stale-ttl-ms:600000}") long staleTtl) {
+		this.batcher = batcher;
+		this.upstreamGuard = upstreamGuard;
+		this.ttl = ttl;
+		this.staleTtl = staleTtl;
+	}
+
+	/**
+	 * Returns the predictions for the given stops, from the cache when a fresh
+	 * entry exists.
+	 * 
+	 * @see BustimeAPIRequest#requestPredictions(String, String, int)
+	 */
+	public List<Prediction> getPredictions(String stpids, String rts, int top)
+			throws MalformedURLException, BusTimeErrorReceivedException {
+		try {
+			return getPredictionsAsync(stpids, rts, top).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof BusTimeErrorReceivedException) {
+				throw (BusTimeErrorReceivedException) e.getCause();
+			}
+			if (e.getCause() instanceof MalformedURLException) {
+				throw (MalformedURLException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Asynchronous variant of
+	 * {@link PredictionCacheService#getPredictions(String, String, int)}. A
+	 * cached error message completes the future exceptionally with a
+	 * {@link BusTimeErrorReceivedException}.
+	 */
+	public CompletableFuture<List<Prediction>> getPredictionsAsync(String stpids, String rts, int top) {
+		return getPredictionResultAsync(stpids, rts, top).thenApply(PredictionResult::getPredictions);
+	}
+
+	/**
+	 * Like
+	 * {@link PredictionCacheService#getPredictionsAsync(String, String, int)},
+	 * but also tells the caller how old the predictions are and whether they
+	 * are a stale fallback.
+	 */
+	public CompletableFuture<PredictionResult> getPredictionResultAsync(String stpids, String rts, int top) {
+		return getPredictionResultAsync(stpids, rts, top, RequestHedger.NO_DEADLINE);
+	}
+
+	/**
+	 * Same as
+	 * {@link PredictionCacheService#getPredictionResultAsync(String, String, int)},
+	 * for a caller that gives up at the given deadline (epoch millis). An
+	 * upstream request started for it is abandoned at the deadline.
+	 */
+	public CompletableFuture<PredictionResult> getPredictionResultAsync(String stpids, String rts, int top,
+			long deadline) {
+
+		PredictionKey key = PredictionKey.of(stpids, rts, top);
+		CachedPredictions cached = cache.get(key);
+
+		if (cached != null && !cached.isExpired(ttl)) {
+			return CompletableFuture.completedFuture(cached).thenApply(entry -> entry.toResult(false));
+		}
+
+		boolean fallback = cached != null && !cached.isExpired(ttl + staleTtl);
+		if (fallback && upstreamGuard.isOpen()) {
+			return CompletableFuture.completedFuture(cached).thenApply(entry -> entry.toResult(true));
+		}
+
+		return load(key, deadline).handle((loaded, e) -> {
+			if (e == null) {
+				return loaded.toResult(false);
+			}
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			if (fallback) {
+				log.warn("[getPredictionResultAsync()] - Serving stale predictions for {}: {}", key, cause.toString());
+				return cached.toResult(true);
+			}
+			throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(cause);
+		});
+	}
+
+	/**
+	 * Cached predictions are shared, so countdowns are recomputed on copies
+	 * as they are served. Predictions for buses that have already passed are
+	 * dropped.
+	 */
+	static List<Prediction> withCurrentCountdowns(List<Prediction> predictions) {
+		long now = System.currentTimeMillis();
+		return predictions.stream().filter(prediction -> !prediction.isDepartedAt(now))
+				.map(prediction -> prediction.withCountdownAt(now)).collect(Collectors.toList());
+	}
+
+	private CompletableFuture<CachedPredictions> load(PredictionKey key, long deadline) {
+
+		CompletableFuture<CachedPredictions> call = new CompletableFuture<>();
+		CompletableFuture<CachedPredictions> existing = inFlight.putIfAbsent(key, call);
+		if (existing != null) {
+			return existing;
+		}
+
+		batcher.getPredictionsAsync(key.getStpids(), key.getRts(), key.getTop(), deadline).whenComplete((predictions, e) -> {
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+			CachedPredictions loaded;
+			if (cause == null) {
+				loaded = new CachedPredictions(Collections.unmodifiableList(predictions), null);
+			} else if (cause instanceof BusTimeErrorReceivedException) {
+				loaded = new CachedPredictions(null, cause.getMessage());
+			} else {
+				inFlight.remove(key, call);
+				call.completeExceptionally(cause);
+				return;
+			}
+
+			cache.put(key, loaded);
+			inFlight.remove(key, call);
+			call.complete(loaded);
+		});
+		return call;
+	}
+
+	/**
+	 * Drops entries that are too old to serve even as a stale fallback, so that
+	 * keys which are no longer requested do not stay in memory.
+	 */
+	@Scheduled(fixedDelayString = "${bustime.predictions.cache-ttl-ms:15000}")
+	public void evictExpired() {
+		int before = cache.size();
+		cache.values().removeIf(cached -> cached.isExpired(ttl + staleTtl));
+		log.debug("[evictExpired()] - Evicted {} expired prediction entries", before - cache.size());
+	}
+
+	/**
+	 * The outcome of one upstream predictions request: either the predictions
+	 * or the error message returned by the CTA API.
+	 */
+	private static class CachedPredictions {
+
+		private final List<Prediction> predictions;
+		private final String error;
+		private final long fetchedAt = System.currentTimeMillis();
+
+		CachedPredictions(List<Prediction> predictions, String error) {
+			this.predictions = predictions;
+			this.error = error;
+		}
+
+		boolean isExpired(long ttl) {
+			return System.currentTimeMillis() - fetchedAt >= ttl;
+		}
+
+		PredictionResult toResult(boolean stale) {
+			if (error != null) {
+				throw new CompletionException(new BusTimeErrorReceivedException(error));
+			}
+			return new PredictionResult(withCurrentCountdowns(predictions), fetchedAt, stale);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import lombok.Value;
+
+/**
+ * Identifies a predictions request independent of how the caller happened to
+ * format it. Stop ids and route codes are trimmed, de-duplicated and sorted so
+ * that "1584,1585" and "1585, 1584" map to the same key. Stop ids are parsed
+ * as numbers, so "01584" is the same stop as "1584".
+ * 
+ * @author Lamar J. Smith
+ */
+@Value
+public class PredictionKey {
+
+	private final String stpids;
+	private final String rts;
+	private final int top;
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if a stop id is not a number.
+	 */
+	public static PredictionKey of(String stpids, String rts, int top) {
+		return new PredictionKey(Arrays.stream(parseStpids(stpids)).mapToObj(String::valueOf)
+				.collect(Collectors.joining(",")), normalize(rts), top);
+	}
+
+	/**
+	 * @return The given comma separated stop ids as numbers, without blanks
+	 *         and duplicates, in ascending order.
+	 * @throws IllegalArgumentException
+	 *             if a stop id is not a number.
+	 */
+	public static int[] parseStpids(String stpids) {
+		if (stpids == null) {
+			return new int[0];
+		}
+		return Arrays.stream(stpids.split(",")).map(String::trim).filter(value -> !value.isEmpty())
+				.mapToInt(PredictionKey::parseStpid).distinct().sorted().toArray();
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the stop id is not a number.
+	 */
+	public static int parseStpid(String stpid) {
+		try {
+			return Integer.parseInt(stpid.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a stop id: " + stpid);
+		}
+	}
+
+	private static String normalize(String values) {
+		if (values == null) {
+			return "";
+		}
+		return Arrays.stream(values.split(",")).map(String::trim).filter(value -> !value.isEmpty()).distinct()
+				.sorted().collect(Collectors.joining(","));
+	}
+}
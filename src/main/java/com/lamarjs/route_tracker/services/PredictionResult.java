@@ -0,0 +1,29 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.List;
+
+import com.lamarjs.route_tracker.models.Prediction;
+
+import lombok.Value;
+
+/**
+ * Predictions as served by {@link PredictionCacheService}, along with when
+ * they were fetched from the CTA API and whether they are a stale fallback
+ * served because the API could not be reached.
+ * 
+ * @author Lamar J. Smith
+ */
+@Value
+public class PredictionResult {
+
+	private final List<Prediction> predictions;
+	private final long fetchedAt; // epoch millis
+	private final boolean stale;
+
+	/**
+	 * @return How long ago, in milliseconds, the predictions were fetched.
+	 */
+	public long getAge() {
+		return System.currentTimeMillis() - fetchedAt;
+	}
+}
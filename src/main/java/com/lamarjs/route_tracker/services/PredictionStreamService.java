@@ -0,0 +1,206 @@
+package com.lamarjs.route_tracker.services;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.lamarjs.route_tracker.models.Prediction;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pushes predictions to Server-Sent Events subscribers. All subscribers to the
+ * same stops (by {@link PredictionKey}) share a single poller, which fetches
+ * predictions through the {@link PredictionCacheService} every
+ * bustime.stream.poll-interval-ms and sends the result to each of them. A
+ * poller is started by the first subscriber to its stops and stopped when the
+ * last one disconnects, so upstream requests scale with the number of distinct
+ * stop sets being watched rather than with the number of clients.
+ * <p>
+ * Each poll sends a "predictions" event with the list of predictions, or an
+ * "error" event with the message returned by the CTA API.
+ * </p>
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class PredictionStreamService {
+
+	public static final String PREDICTIONS_EVENT = "predictions";
+	public static final String ERROR_EVENT = "error";
+
+	private final PredictionCacheService predictionCache;
+	private final long pollInterval;
+	private final long emitterTimeout;
+	private final ScheduledExecutorService scheduler;
+	private final Map<PredictionKey, Poller> pollers = new ConcurrentHashMap<>();
+
+	@Autowired
+	public PredictionStreamService(PredictionCacheService predictionCache,
+			@Value("${bustime.stream.poll-interval-ms:15000}") long pollInterval,
+			@Value("${bustime.stream.timeout-ms:1800000}") long emitterTimeout,
+			@Value("${bustime.stream.threads:2}") int threads) {
+		this.predictionCache = predictionCache;
+		this.pollInterval = pollInterval;
+		this.emitterTimeout = emitterTimeout;
+		this.scheduler = Executors.newScheduledThreadPool(threads, new CustomizableThreadFactory("prediction-stream-"));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+		pollers.values().forEach(poller -> poller.subscribers.forEach(SseEmitter::complete));
+	}
+
+	/**
+	 * Subscribes a new client to predictions for the given stops.
+	 * 
+	 * @return The emitter that events for this client are sent on.
+	 */
+	public SseEmitter subscribe(String stpids, String rts, int top) {
+		PredictionKey key = PredictionKey.of(stpids, rts, top);
+		SseEmitter emitter = new SseEmitter(emitterTimeout);
+
+		emitter.onCompletion(() -> unsubscribe(key, emitter));
+		emitter.onTimeout(() -> unsubscribe(key, emitter));
+
+		Poller[] created = new Poller[1];
+		Poller poller = pollers.compute(key, (ignored, existing) -> {
+			Poller subscribed = existing;
+			if (subscribed == null) {
+				subscribed = new Poller(key);
+				created[0] = subscribed;
+			}
+			subscribed.subscribers.add(emitter);
+			return subscribed;
+		});
+		if (created[0] != null) {
+			created[0].start();
+		}
+
+		// A new subscriber to an existing poller gets the latest event straight
+		// away rather than waiting for the next poll.
+		Event latest = poller.latest;
+		if (latest != null) {
+			send(key, emitter, latest);
+		}
+		return emitter;
+	}
+
+	void unsubscribe(PredictionKey key, SseEmitter emitter) {
+		Poller[] removed = new Poller[1];
+		pollers.computeIfPresent(key, (ignored, poller) -> {
+			poller.subscribers.remove(emitter);
+			if (poller.subscribers.isEmpty()) {
+				removed[0] = poller;
+				return null;
+			}
+			return poller;
+		});
+		if (removed[0] != null) {
+			removed[0].stop();
+			log.debug("[unsubscribe()] - Last subscriber left, stopped polling stops: {}", key.getStpids());
+		}
+	}
+
+	/**
+	 * @return The number of distinct stop sets currently being polled.
+	 */
+	public int getPollerCount() {
+		return pollers.size();
+	}
+
+	/**
+	 * Sends the event to one subscriber. SseEventBuilder is not thread-safe
+	 * and is changed by being sent, so a fresh one is built for every send.
+	 */
+	private void send(PredictionKey key, SseEmitter emitter, Event event) {
+		try {
+			emitter.send(SseEmitter.event().name(event.name).data(event.data));
+		} catch (IOException | IllegalStateException e) {
+			// The client has gone away.
+			unsubscribe(key, emitter);
+		}
+	}
+
+	/**
+	 * The name and payload of one event, kept so it can be sent again.
+	 */
+	private static class Event {
+
+		private final String name;
+		private final Object data;
+
+		Event(String name, Object data) {
+			this.name = name;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * Polls one stop set and fans each result out to its subscribers.
+	 */
+	private class Poller {
+
+		private final PredictionKey key;
+		private final Set<SseEmitter> subscribers = new CopyOnWriteArraySet<>();
+		private ScheduledFuture<?> task;
+		private boolean stopped;
+		private volatile Event latest;
+
+		Poller(PredictionKey key) {
+			this.key = key;
+		}
+
+		/**
+		 * Starts polling. Called outside the pollers map's remapping function,
+		 * so this may run after the last subscriber has already left.
+		 */
+		synchronized void start() {
+			if (!stopped) {
+				task = scheduler.scheduleWithFixedDelay(this::poll, 0, pollInterval, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		synchronized void stop() {
+			stopped = true;
+			if (task != null) {
+				task.cancel(false);
+			}
+		}
+
+		private void poll() {
+			predictionCache.getPredictionsAsync(key.getStpids(), key.getRts(), key.getTop())
+					.whenComplete(this::publish);
+		}
+
+		private void publish(List<Prediction> predictions, Throwable e) {
+			Event event;
+			if (e == null) {
+				event = new Event(PREDICTIONS_EVENT, predictions);
+			} else {
+				Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+				event = new Event(ERROR_EVENT, String.valueOf(cause.getMessage()));
+			}
+			latest = event;
+			subscribers.forEach(emitter -> send(key, emitter, event));
+		}
+	}
+}
@@ -0,0 +1,240 @@
+package com.lamarjs.route_tracker.services;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Service;
+
+import com.lamarjs.route_tracker.exceptions.QuotaExceededException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps requests to the CTA API within the key's per-second rate and daily
+ * quota. Every request takes a token from a bucket that refills at
+ * bustime.quota.per-second, and counts against bustime.quota.daily-limit,
+ * which resets at midnight Chicago time. Both limits are per key, and are
+ * multiplied by the number of keys the {@link ApiKeyPool} has in rotation.
+ * <p>
+ * Requests are queued by {@link RequestPriority}. A waiting request is only
+ * given a token once no higher priority request is waiting, and lower lanes
+ * may not dip into the share of the daily quota reserved for the lanes above
+ * them. A request that can not get a token within its lane's maximum wait is
+ * shed with a {@link QuotaExceededException}.
+ * </p>
+ * The remaining quota is published through the actuator metrics endpoint.
+ * Requests that were shed and {@link QuotaGovernor#tryAcquire(RequestPriority)}
+ * calls that were refused, e.g. hedges that were not sent, are counted
+ * separately per lane.
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class QuotaGovernor implements PublicMetrics {
+
+	private static final ZoneId CTA_ZONE = ZoneId.of("America/Chicago");
+	private static final RequestPriority[] LANES = RequestPriority.values();
+
+	private final long dailyLimit;
+	private final double perSecond;
+	private final ApiKeyPool keyPool;
+	private final double[] reserve = new double[LANES.length]; // fraction of
+																// dailyLimit
+	private final long[] maxWait = new long[LANES.length]; // millis
+
+	private double tokens;
+	private long lastRefill = System.nanoTime();
+	private LocalDate day = LocalDate.now(CTA_ZONE);
+	private long dailyUsed;
+	private final int[] waiting = new int[LANES.length];
+	private final long[] granted = new long[LANES.length];
+	private final long[] shed = new long[LANES.length];
+	private final long[] skipped = new long[LANES.length];
+
+	/**
+	 * Creates a governor for a single key.
+	 */
+	public QuotaGovernor(long dailyLimit, double perSecond, double refreshReserve, double prefetchReserve,
+			long interactiveMaxWait, long backgroundMaxWait) {
+		this(dailyLimit, perSecond, refreshReserve, prefetchReserve, interactiveMaxWait, backgroundMaxWait, null);
+	}
+
+	@Autowired
+	public QuotaGovernor(@Value("${bustime.quota.daily-limit:10000}") long dailyLimit,
+			@Value("${bustime.quota.per-second:10}") double perSecond,
+			@Value("${bustime.quota.refresh-reserve:0.1}") double refreshReserve,
+			@Value("${bustime.quota.prefetch-reserve:0.25}") double prefetchReserve,
+			@Value("${bustime.quota.interactive-max-wait-ms:2000}") long interactiveMaxWait,
+			@Value("${bustime.quota.background-max-wait-ms:60000}") long backgroundMaxWait, ApiKeyPool keyPool) {
+		this.dailyLimit = dailyLimit;
+		this.perSecond = perSecond;
+		this.keyPool = keyPool;
+		this.tokens = getPerSecond();
+
+		reserve[RequestPriority.INTERACTIVE.ordinal()] = 0;
+		reserve[RequestPriority.REFRESH.ordinal()] = refreshReserve;
+		reserve[RequestPriority.PREFETCH.ordinal()] = prefetchReserve;
+
+		maxWait[RequestPriority.INTERACTIVE.ordinal()] = interactiveMaxWait;
+		maxWait[RequestPriority.REFRESH.ordinal()] = backgroundMaxWait;
+		maxWait[RequestPriority.PREFETCH.ordinal()] = backgroundMaxWait;
+	}
+
+	/**
+	 * Waits until a request in the given lane may be sent.
+	 * 
+	 * @throws QuotaExceededException
+	 *             if the lane's share of the daily quota is used up, or no
+	 *             token became available within the lane's maximum wait.
+	 */
+	public void acquire(RequestPriority priority) throws QuotaExceededException {
+		acquire(priority, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Like {@link QuotaGovernor#acquire(RequestPriority)}, but gives up at the
+	 * caller's deadline (epoch millis) if that comes before the lane's maximum
+	 * wait.
+	 */
+	public void acquire(RequestPriority priority, long callerDeadline) throws QuotaExceededException {
+		int lane = priority.ordinal();
+		long deadline = Math.min(callerDeadline, System.currentTimeMillis() + maxWait[lane]);
+
+		synchronized (this) {
+			waiting[lane]++;
+			try {
+				while (true) {
+					if (!hasDailyBudget(lane)) {
+						shed[lane]++;
+						throw new QuotaExceededException("Daily CTA API quota exhausted for the " + priority + " lane");
+					}
+
+					if (takeToken(lane)) {
+						return;
+					}
+
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining <= 0) {
+						shed[lane]++;
+						throw new QuotaExceededException(
+								"Timed out waiting for CTA API rate limit in the " + priority + " lane");
+					}
+					long untilNextToken = (long) Math.ceil((1 - tokens) * 1000 / getPerSecond());
+					wait(Math.max(1, Math.min(remaining, untilNextToken)));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				shed[lane]++;
+				throw new QuotaExceededException("Interrupted waiting for CTA API rate limit");
+			} finally {
+				waiting[lane]--;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Takes a token for the given lane only if one is available right now. A
+	 * refusal is counted as skipped rather than shed, since the caller has not
+	 * lost a request it needed.
+	 * 
+	 * @return true if the request may be sent.
+	 */
+	public synchronized boolean tryAcquire(RequestPriority priority) {
+		int lane = priority.ordinal();
+		if (hasDailyBudget(lane) && takeToken(lane)) {
+			return true;
+		}
+		skipped[lane]++;
+		return false;
+	}
+
+	/**
+	 * @return The number of requests left in today's quota.
+	 */
+	public synchronized long getDailyRemaining() {
+		rollDay();
+		return Math.max(0, getDailyLimit() - dailyUsed);
+	}
+
+	/**
+	 * Requests already sent with a key that has since left the rotation stay
+	 * counted, which errs on the side of sending too few.
+	 */
+	private long getDailyLimit() {
+		return dailyLimit * getKeysInRotation();
+	}
+
+	private double getPerSecond() {
+		return perSecond * getKeysInRotation();
+	}
+
+	private int getKeysInRotation() {
+		return keyPool == null ? 1 : Math.max(1, keyPool.getActiveCount());
+	}
+
+	private boolean hasDailyBudget(int lane) {
+		rollDay();
+		long limit = getDailyLimit();
+		return limit - dailyUsed > reserve[lane] * limit;
+	}
+
+	private boolean takeToken(int lane) {
+		refill();
+		if (tokens < 1) {
+			return false;
+		}
+		for (int higher = 0; higher < lane; higher++) {
+			if (waiting[higher] > 0) {
+				return false;
+			}
+		}
+		tokens--;
+		dailyUsed++;
+		granted[lane]++;
+		return true;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		double rate = getPerSecond();
+		tokens = Math.min(rate, tokens + (now - lastRefill) * rate / 1e9);
+		lastRefill = now;
+	}
+
+	private void rollDay() {
+		LocalDate today = LocalDate.now(CTA_ZONE);
+		if (!today.equals(day)) {
+			log.info("[rollDay()] - Resetting daily CTA API quota, {} requests were used on {}", dailyUsed, day);
+			day = today;
+			dailyUsed = 0;
+		}
+	}
+
+	@Override
+	public synchronized Collection<Metric<?>> metrics() {
+		rollDay();
+		refill();
+		List<Metric<?>> metrics = new ArrayList<>();
+		metrics.add(new Metric<>("bustime.quota.daily.limit", getDailyLimit()));
+		metrics.add(new Metric<>("bustime.quota.daily.used", dailyUsed));
+		metrics.add(new Metric<>("bustime.quota.daily.remaining", Math.max(0, getDailyLimit() - dailyUsed)));
+		metrics.add(new Metric<>("bustime.quota.tokens", tokens));
+		for (RequestPriority priority : LANES) {
+			String lane = priority.name().toLowerCase();
+			metrics.add(new Metric<>("bustime.quota." + lane + ".waiting", waiting[priority.ordinal()]));
+			metrics.add(new Metric<>("bustime.quota." + lane + ".granted", granted[priority.ordinal()]));
+			metrics.add(new Metric<>("bustime.quota." + lane + ".shed", shed[priority.ordinal()]));
+			metrics.add(new Metric<>("bustime.quota." + lane + ".skipped", skipped[priority.ordinal()]));
+		}
+		return metrics;
+	}
+}
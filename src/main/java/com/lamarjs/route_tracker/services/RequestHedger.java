@@ -0,0 +1,265 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.lamarjs.route_tracker.metrics.BustimeMetrics;
+import com.lamarjs.route_tracker.metrics.RollingHistogram;
+import com.lamarjs.route_tracker.services.BustimeAPIRequest.RequestType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends hedged, deadline bound requests to the CTA API. Once the first
+ * attempt has been sent, if it has not answered within
+ * bustime.hedge.percentile of the recent upstream latency for its request
+ * type, a second identical attempt is sent and whichever answers first wins.
+ * The request only fails if every attempt does.
+ * <p>
+ * A hedge is only sent if the {@link QuotaGovernor} has a token available
+ * right away, so hedging never queues behind, or takes quota away from,
+ * regular requests. No hedge is sent until at least bustime.hedge.min-samples
+ * latencies have been recorded, and setting the percentile to 0 disables
+ * hedging. The hedge delay is recomputed every
+ * {@link RequestHedger#RECOMPUTE_EVERY} latencies rather than on every
+ * request, since computing a percentile sorts the whole latency window.
+ * </p>
+ * <p>
+ * The caller's deadline (epoch millis, or {@link RequestHedger#NO_DEADLINE})
+ * bounds the quota wait, and once it passes the request fails with a
+ * {@link TimeoutException}, attempts that have not started yet are dropped
+ * and no hedge is sent. An HTTP exchange that is already in progress runs to
+ * completion, but its result is discarded.
+ * </p>
+ *
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class RequestHedger {
+
+	/**
+	 * Deadline for requests that nobody is waiting on with a timeout.
+	 */
+	public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+	/**
+	 * The number of new latencies after which the hedge delay is recomputed.
+	 */
+	static final long RECOMPUTE_EVERY = 64;
+
+	private final QuotaGovernor quotaGovernor;
+	private final BustimeMetrics metrics;
+	private final ExecutorService executor;
+	private final ScheduledExecutorService timer;
+	private final double percentile;
+	private final long minSamples;
+	private final ConcurrentMap<RequestType, HedgeDelay> hedgeDelays = new ConcurrentHashMap<>();
+
+	@Autowired
+	public RequestHedger(QuotaGovernor quotaGovernor, BustimeMetrics metrics,
+			@Qualifier("bustimeExecutor") ExecutorService executor,
+			@Value("${bustime.hedge.percentile:95}") double percentile,
+			@Value("${bustime.hedge.min-samples:100}") long minSamples) {
+		this.quotaGovernor = quotaGovernor;
+		this.metrics = metrics;
+		this.executor = executor;
+		this.percentile = percentile;
+		this.minSamples = minSamples;
+		this.timer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("bustime-hedge-timer-"));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		timer.shutdownNow();
+	}
+
+	/**
+	 * Runs the attempt on the bustimeExecutor, hedging it if it is slow. The
+	 * attempt must run the admission it is given right before sending its
+	 * request; for the first attempt that waits for quota in the given lane,
+	 * up to the deadline.
+	 *
+	 * @return A future that completes with the first successful attempt's
+	 *         result, or exceptionally, wrapped in a
+	 *         {@link CompletionException}, with the last failure or a
+	 *         {@link TimeoutException} at the deadline.
+	 */
+	public <T> CompletableFuture<T> send(RequestType type, RequestPriority priority, long deadline,
+			Attempt<T> attempt) {
+		return new HedgedRequest<>(type, priority, deadline, attempt).start();
+	}
+
+	/**
+	 * @return How long the first attempt of the given type may take before it
+	 *         is hedged, or -1 if it should not be.
+	 */
+	long getHedgeDelay(RequestType type) {
+		RollingHistogram latency = metrics.getUpstreamLatency(type);
+		long count = latency.getCount();
+		if (percentile <= 0 || count < minSamples) {
+			return -1;
+		}
+		HedgeDelay cached = hedgeDelays.get(type);
+		if (cached == null || count - cached.count >= RECOMPUTE_EVERY) {
+			// Concurrent callers may both recompute; either result is fine.
+			cached = new HedgeDelay(count, latency.getPercentile(percentile));
+			hedgeDelays.put(type, cached);
+		}
+		return cached.delay;
+	}
+
+	/**
+	 * A hedge delay and the latency count it was computed at.
+	 */
+	private static class HedgeDelay {
+		private final long count;
+		private final long delay;
+
+		HedgeDelay(long count, long delay) {
+			this.count = count;
+			this.delay = delay;
+		}
+	}
+
+	@FunctionalInterface
+	public interface Attempt<T> {
+		T send(Runnable admission) throws Exception;
+	}
+
+	/**
+	 * The attempts made for one call to
+	 * {@link RequestHedger#send(RequestType, RequestPriority, long, Attempt)}.
+	 */
+	private class HedgedRequest<T> {
+
+		private final RequestType type;
+		private final RequestPriority priority;
+		private final long deadline;
+		private final Attempt<T> attempt;
+		private final CompletableFuture<T> result = new CompletableFuture<>();
+		private final List<Future<?>> pending = new CopyOnWriteArrayList<>();
+		private int running;
+		private boolean settled;
+
+		HedgedRequest(RequestType type, RequestPriority priority, long deadline, Attempt<T> attempt) {
+			this.type = type;
+			this.priority = priority;
+			this.deadline = deadline;
+			this.attempt = attempt;
+		}
+
+		CompletableFuture<T> start() {
+			if (deadline != NO_DEADLINE) {
+				pending.add(timer.schedule(this::expire, Math.max(0, deadline - System.currentTimeMillis()),
+						TimeUnit.MILLISECONDS));
+			}
+			result.whenComplete((value, e) -> pending.forEach(future -> future.cancel(false)));
+
+			synchronized (this) {
+				running++;
+			}
+			launch(false, () -> {
+				quotaGovernor.acquire(priority, deadline);
+				scheduleHedge();
+			});
+			return result;
+		}
+
+		private void scheduleHedge() {
+			long delay = getHedgeDelay(type);
+			if (delay >= 0 && !result.isDone()) {
+				pending.add(timer.schedule(this::hedge, delay, TimeUnit.MILLISECONDS));
+			}
+		}
+
+		private void hedge() {
+			synchronized (this) {
+				if (result.isDone() || running == 0 || System.currentTimeMillis() >= deadline) {
+					return;
+				}
+				if (!quotaGovernor.tryAcquire(priority)) {
+					log.debug("[hedge()] - No quota left to hedge a slow {} request", type.format());
+					return;
+				}
+				running++;
+			}
+			metrics.counter("bustime.upstream." + type.format() + ".hedged").increment();
+			launch(true, () -> {
+			});
+		}
+
+		private void launch(boolean hedge, Runnable admission) {
+			Future<?> future = executor.submit(() -> {
+				T value;
+				try {
+					value = attempt.send(admission);
+				} catch (Exception e) {
+					failed(e);
+					return;
+				}
+				if (settle()) {
+					if (hedge) {
+						metrics.counter("bustime.upstream." + type.format() + ".hedge_wins").increment();
+					}
+					result.complete(value);
+				}
+			});
+			pending.add(future);
+			if (result.isDone()) {
+				future.cancel(false);
+			}
+		}
+
+		/**
+		 * Claims the right to complete the result, so that its metric is
+		 * recorded before anyone waiting on the result can see it.
+		 * 
+		 * @return true for the first caller only.
+		 */
+		private synchronized boolean settle() {
+			if (settled) {
+				return false;
+			}
+			settled = true;
+			return true;
+		}
+
+		private void failed(Exception e) {
+			synchronized (this) {
+				if (--running > 0) {
+					return;
+				}
+			}
+			if (settle()) {
+				result.completeExceptionally(e instanceof CompletionException ? e : new CompletionException(e));
+			}
+		}
+
+		private void expire() {
+			if (settle()) {
+				metrics.counter("bustime.upstream." + type.format() + ".deadline_exceeded").increment();
+				result.completeExceptionally(new CompletionException(new TimeoutException(
+						"Deadline passed waiting for a " + type.format() + " response from the CTA API")));
+			}
+		}
+	}
+}
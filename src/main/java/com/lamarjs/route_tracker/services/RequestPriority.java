@@ -0,0 +1,26 @@
+package com.lamarjs.route_tracker.services;
+
+/**
+ * The lanes that requests to the CTA API are queued in by
+ * {@link QuotaGovernor}, highest priority first. A request in a lower lane
+ * only gets quota when no higher lane is waiting for it.
+ * 
+ * @author Lamar J. Smith
+ */
+public enum RequestPriority {
+
+	/**
+	 * Requests a client is actively waiting on, e.g. predictions.
+	 */
+	INTERACTIVE,
+
+	/**
+	 * Background rebuilds of the static route network.
+	 */
+	REFRESH,
+
+	/**
+	 * Speculative requests made ahead of any client asking for the data.
+	 */
+	PREFETCH
+}
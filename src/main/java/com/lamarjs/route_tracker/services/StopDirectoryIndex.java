@@ -0,0 +1,221 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+import com.lamarjs.route_tracker.models.RouteDirection;
+import com.lamarjs.route_tracker.models.Stop;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reverse lookups over the current {@link NetworkSnapshot}: the routes and
+ * directions serving a stop id, and the stops whose name starts with a given
+ * prefix. Stop ids are hashed into an open addressing table of primitive ints,
+ * so a stop id is found in constant time without boxing. Names are normalized
+ * (lower cased, whitespace collapsed) and kept in a sorted array next to the
+ * positions of their stops in the {@link CompactNetwork}, so a prefix search
+ * is a binary search rather than a scan over the whole network, and a
+ * {@link Stop} is only materialized for a match. Like
+ * {@link StopSpatialIndex}, the index is rebuilt whenever a new snapshot is
+ * published.
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class StopDirectoryIndex {
+
+	private final NetworkCacheService networkCache;
+	private volatile Directory directory;
+
+	@Autowired
+	public StopDirectoryIndex(NetworkCacheService networkCache) {
+		this.networkCache = networkCache;
+	}
+
+	@PostConstruct
+	public void initialize() {
+		networkCache.getSnapshot().ifPresent(this::rebuild);
+	}
+
+	@EventListener
+	public void onNetworkPublished(NetworkSnapshotPublishedEvent event) {
+		rebuild(event.getSnapshot());
+	}
+
+	/**
+	 * @return true once the index has been built from a network snapshot.
+	 */
+	public boolean isReady() {
+		return directory != null;
+	}
+
+	/**
+	 * @return The routes and directions that serve the given stop, or an empty
+	 *         list if the stop is unknown.
+	 */
+	public List<RouteDirection> getRoutesForStop(int stpid) {
+		Directory current = directory;
+		if (current == null) {
+			return Collections.emptyList();
+		}
+		int index = current.find(stpid);
+		List<RouteDirection> routes = index < 0 ? null : current.routesByStop.get(index);
+		return routes == null ? Collections.<RouteDirection>emptyList() : routes;
+	}
+
+	/**
+	 * @return Up to limit stops whose name starts with the given prefix,
+	 *         ignoring case and extra whitespace, in name order.
+	 */
+	public List<Stop> searchByName(String prefix, int limit) {
+		Directory current = directory;
+		String normalized = normalize(prefix);
+		if (current == null || normalized.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		int from = lowerBound(current.names, normalized);
+		List<Stop> matches = new ArrayList<>();
+		for (int i = from; i < current.names.length && matches.size() < limit; i++) {
+			if (!current.names[i].startsWith(normalized)) {
+				break;
+			}
+			matches.add(current.network.getStop(current.byName[i]));
+		}
+		return matches;
+	}
+
+	void rebuild(NetworkSnapshot snapshot) {
+		CompactNetwork network = snapshot.getNetwork();
+
+		List<List<RouteDirection>> routesByStop = new ArrayList<>(
+				Collections.<List<RouteDirection>>nCopies(network.getStopCount(), null));
+		for (BusLine line : network.getBusLines()) {
+			if (line.getDirections() == null) {
+				continue;
+			}
+			for (Direction dir : line.getDirections()) {
+				if (dir.getStops() == null) {
+					continue;
+				}
+				RouteDirection served = new RouteDirection(line.getRt(), dir.getDir());
+				for (Stop stop : dir.getStops()) {
+					int index = network.indexOf(stop.getStpid());
+					if (index < 0) {
+						continue;
+					}
+					List<RouteDirection> routes = routesByStop.get(index);
+					if (routes == null) {
+						routes = new ArrayList<>();
+						routesByStop.set(index, routes);
+					}
+					if (!routes.contains(served)) {
+						routes.add(served);
+					}
+				}
+			}
+		}
+
+		routesByStop.replaceAll(routes -> routes == null ? null : Collections.unmodifiableList(routes));
+
+		int[] byName = IntStream.range(0, network.getStopCount()).filter(stop -> network.getName(stop) != null)
+				.boxed().sorted(Comparator.comparing((Integer stop) -> normalize(network.getName(stop)))
+						.thenComparingInt(network::getStpid))
+				.mapToInt(Integer::intValue).toArray();
+		String[] names = Arrays.stream(byName).mapToObj(stop -> normalize(network.getName(stop)))
+				.toArray(String[]::new);
+
+		directory = new Directory(network, routesByStop, byName, names);
+		log.info("[rebuild()] - Indexed {} stops by id and name", network.getStopCount());
+	}
+
+	/**
+	 * @return The index of the first name that is not less than key.
+	 */
+	private static int lowerBound(String[] names, String key) {
+		int low = 0;
+		int high = names.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (names[mid].compareTo(key) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	static String normalize(String name) {
+		return name == null ? "" : name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.US);
+	}
+
+	private static class Directory {
+		private final CompactNetwork network;
+		private final List<List<RouteDirection>> routesByStop; // by network stop index
+		private final int[] byName; // network stop indices sorted by normalized name
+		private final String[] names; // normalized names, parallel to byName
+
+		// Open addressing table from stop id to network stop index, with
+		// linear probing. A slot is empty when its index is -1.
+		private final int[] slotStpids;
+		private final int[] slotIndices;
+		private final int mask;
+
+		Directory(CompactNetwork network, List<List<RouteDirection>> routesByStop, int[] byName, String[] names) {
+			this.network = network;
+			this.routesByStop = routesByStop;
+			this.byName = byName;
+			this.names = names;
+
+			// At most half full, so probe sequences stay short.
+			int capacity = Integer.highestOneBit(Math.max(network.getStopCount(), 1) * 2 - 1) << 1;
+			this.slotStpids = new int[capacity];
+			this.slotIndices = new int[capacity];
+			this.mask = capacity - 1;
+			Arrays.fill(slotIndices, -1);
+			for (int index = 0; index < network.getStopCount(); index++) {
+				int slot = slot(network.getStpid(index));
+				while (slotIndices[slot] >= 0) {
+					slot = (slot + 1) & mask;
+				}
+				slotStpids[slot] = network.getStpid(index);
+				slotIndices[slot] = index;
+			}
+		}
+
+		/**
+		 * @return The network stop index of the given stop id, or -1 if the
+		 *         network does not contain it.
+		 */
+		int find(int stpid) {
+			for (int slot = slot(stpid); slotIndices[slot] >= 0; slot = (slot + 1) & mask) {
+				if (slotStpids[slot] == stpid) {
+					return slotIndices[slot];
+				}
+			}
+			return -1;
+		}
+
+		private int slot(int stpid) {
+			// Stop ids are mostly consecutive; spread them over the table.
+			int hash = stpid * 0x9E3779B9;
+			return (hash ^ (hash >>> 16)) & mask;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.lamarjs.route_tracker.models.NearbyStop;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A grid based spatial index over every distinct stop in the current
+ * {@link NetworkSnapshot}. Stops are bucketed into cells of
+ * {@link StopSpatialIndex#CELL_DEGREES} on each side, so a nearby search only
+ * measures the distance to stops in the few cells that overlap the search
+ * radius. The index is rebuilt whenever a new snapshot is published and
+ * swapped in atomically.
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class StopSpatialIndex {
+
+	/**
+	 * The size of a grid cell in degrees of latitude and longitude, roughly
+	 * 1.1km north to south in Chicago.
+	 */
+	public static final double CELL_DEGREES = 0.01;
+
+	/**
+	 * The largest search radius, in meters, that a search will cover.
+	 */
+	public static final double MAX_RADIUS = 5000;
+
+	private static final double EARTH_RADIUS = 6371008.8; // meters
+	private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS / 180;
+
+	private final NetworkCacheService networkCache;
+	private volatile Grid grid;
+
+	@Autowired
+	public StopSpatialIndex(NetworkCacheService networkCache) {
+		this.networkCache = networkCache;
+	}
+
+	/**
+	 * Builds the index from a snapshot that was published before this bean
+	 * started listening, e.g. one restored at startup.
+	 */
+	@PostConstruct
+	public void initialize() {
+		networkCache.getSnapshot().ifPresent(this::rebuild);
+	}
+
+	@EventListener
+	public void onNetworkPublished(NetworkSnapshotPublishedEvent event) {
+		rebuild(event.getSnapshot());
+	}
+
+	/**
+	 * @return true once the index has been built from a network snapshot.
+	 */
+	public boolean isReady() {
+		return grid != null;
+	}
+
+	/**
+	 * Finds the stops within the given radius of a location, closest first.
+	 * 
+	 * @param radius
+	 *            Search radius in meters, capped at
+	 *            {@link StopSpatialIndex#MAX_RADIUS}.
+	 * @param limit
+	 *            The maximum number of stops to return.
+	 */
+	public List<NearbyStop> nearby(double lat, double lon, double radius, int limit) {
+		Grid current = grid;
+		if (current == null) {
+			return new ArrayList<>();
+		}
+		radius = Math.min(radius, MAX_RADIUS);
+
+		double latSpan = radius / METERS_PER_DEGREE;
+		double lonSpan = radius / (METERS_PER_DEGREE * Math.max(Math.cos(Math.toRadians(lat)), 0.01));
+
+		List<NearbyStop> found = new ArrayList<>();
+		for (int latCell = cell(lat - latSpan); latCell <= cell(lat + latSpan); latCell++) {
+			for (int lonCell = cell(lon - lonSpan); lonCell <= cell(lon + lonSpan); lonCell++) {
+				int[] stops = current.cells.get(key(latCell, lonCell));
+				if (stops == null) {
+					continue;
+				}
+				for (int stop : stops) {
+					double distance = distance(lat, lon, current.network.getLat(stop), current.network.getLon(stop));
+					if (distance <= radius) {
+						found.add(new NearbyStop(current.network.getStop(stop), distance));
+					}
+				}
+			}
+		}
+
+		return found.stream().sorted(Comparator.comparingDouble(NearbyStop::getDistance)).limit(limit)
+				.collect(Collectors.toList());
+	}
+
+	void rebuild(NetworkSnapshot snapshot) {
+		CompactNetwork network = snapshot.getNetwork();
+
+		Map<Long, List<Integer>> members = new HashMap<>();
+		for (int stop = 0; stop < network.getStopCount(); stop++) {
+			members.computeIfAbsent(key(cell(network.getLat(stop)), cell(network.getLon(stop))),
+					ignored -> new ArrayList<>()).add(stop);
+		}
+
+		Map<Long, int[]> cells = new HashMap<>(members.size() * 2);
+		members.forEach((key, stops) -> cells.put(key, stops.stream().mapToInt(Integer::intValue).toArray()));
+
+		grid = new Grid(network, cells);
+		log.info("[rebuild()] - Indexed {} stops in {} cells", network.getStopCount(), cells.size());
+	}
+
+	private static int cell(double degrees) {
+		return (int) Math.floor(degrees / CELL_DEGREES);
+	}
+
+	private static long key(int latCell, int lonCell) {
+		return ((long) latCell << 32) | (lonCell & 0xffffffffL);
+	}
+
+	/**
+	 * Great-circle distance in meters (haversine formula).
+	 */
+	static double distance(double lat1, double lon1, double lat2, double lon2) {
+		double dLat = Math.toRadians(lat2 - lat1);
+		double dLon = Math.toRadians(lon2 - lon1);
+		double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(lat1))
+				* Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+		return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(a));
+	}
+
+	private static class Grid {
+		private final CompactNetwork network;
+		private final Map<Long, int[]> cells; // cell key -> stop table indices
+
+		Grid(CompactNetwork network, Map<Long, int[]> cells) {
+			this.network = network;
+			this.cells = cells;
+		}
+	}
+}
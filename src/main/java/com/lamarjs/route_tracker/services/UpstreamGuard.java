@@ -0,0 +1,213 @@
+package com.lamarjs.route_tracker.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+
+import com.lamarjs.route_tracker.exceptions.QuotaExceededException;
+import com.lamarjs.route_tracker.exceptions.UpstreamUnavailableException;
+import com.lamarjs.route_tracker.services.BustimeAPIRequest.RequestType;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * Protects the service from a slow or failing CTA API with a circuit breaker
+ * around every upstream call and a bulkhead per {@link RequestType}.
+ * </p>
+ * <p>
+ * After bustime.breaker.failure-threshold consecutive transport failures
+ * (timeouts, connection errors, 5xx responses) the breaker opens and every
+ * call fails immediately with an {@link UpstreamUnavailableException} for
+ * bustime.breaker.open-ms. A single trial call is then let through; its
+ * success closes the breaker and its failure opens it again. Error messages
+ * returned by the CTA API in a well formed response are answers, not failures,
+ * and do not count. Neither do 4xx responses, local quota shedding or any
+ * other exception thrown by the call, which say more about the request than
+ * about the health of the CTA API; they only give up the trial, if the call
+ * was one.
+ * </p>
+ * <p>
+ * Each request type may have at most bustime.bulkhead.max-concurrent calls in
+ * flight, so that e.g. a slow stops endpoint during a refresh cannot take every
+ * thread away from predictions. A call that cannot enter its bulkhead within
+ * bustime.bulkhead.max-wait-ms is rejected. Callers should wait for quota
+ * before calling, so that neither a bulkhead permit nor the trial is held
+ * while waiting.
+ * </p>
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+@Service
+public class UpstreamGuard implements PublicMetrics {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+	private final long openDuration;
+	private final long bulkheadMaxWait;
+	private final Map<RequestType, Semaphore> bulkheads = new EnumMap<>(RequestType.class);
+	private final Map<RequestType, AtomicLong> rejected = new EnumMap<>(RequestType.class);
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAt;
+	private boolean trialInFlight;
+	private long timesOpened;
+
+	@Autowired
+	public UpstreamGuard(@Value("${bustime.breaker.failure-threshold:5}") int failureThreshold,
+			@Value("${bustime.breaker.open-ms:30000}") long openDuration,
+			@Value("${bustime.bulkhead.max-concurrent:10}") int bulkheadSize,
+			@Value("${bustime.bulkhead.max-wait-ms:500}") long bulkheadMaxWait) {
+		this.failureThreshold = failureThreshold;
+		this.openDuration = openDuration;
+		this.bulkheadMaxWait = bulkheadMaxWait;
+		for (RequestType type : RequestType.values()) {
+			bulkheads.put(type, new Semaphore(bulkheadSize, true));
+			rejected.put(type, new AtomicLong());
+		}
+	}
+
+	/**
+	 * Runs an upstream call of the given type through the breaker and the
+	 * type's bulkhead.
+	 * 
+	 * @throws UpstreamUnavailableException
+	 *             if the breaker is open or the bulkhead stays full.
+	 */
+	public <T> T call(RequestType type, Supplier<T> upstreamCall) {
+		boolean trial = permit(type);
+
+		Semaphore bulkhead = bulkheads.get(type);
+		if (!tryEnter(bulkhead)) {
+			rejected.get(type).incrementAndGet();
+			abandonTrial(trial);
+			throw new UpstreamUnavailableException("Too many " + type.format() + " requests waiting on the CTA API");
+		}
+
+		try {
+			T result = upstreamCall.get();
+			recordSuccess();
+			return result;
+		} catch (QuotaExceededException | HttpClientErrorException e) {
+			// Shed locally, or refused by the CTA API as a bad request; says
+			// nothing about its health.
+			abandonTrial(trial);
+			throw e;
+		} catch (RestClientException e) {
+			recordFailure(e);
+			throw e;
+		} catch (RuntimeException e) {
+			// E.g. a malformed request that was never sent.
+			abandonTrial(trial);
+			throw e;
+		} finally {
+			bulkhead.release();
+		}
+	}
+
+	/**
+	 * @return true if calls are currently being refused, i.e. callers should
+	 *         fall back to what they already have.
+	 */
+	public synchronized boolean isOpen() {
+		return state == State.OPEN && System.currentTimeMillis() - openedAt < openDuration;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return true if this call is the half-open trial.
+	 */
+	private synchronized boolean permit(RequestType type) {
+		if (state == State.OPEN) {
+			if (System.currentTimeMillis() - openedAt < openDuration) {
+				rejected.get(type).incrementAndGet();
+				throw new UpstreamUnavailableException("The CTA API is unavailable; circuit breaker is open");
+			}
+			state = State.HALF_OPEN;
+			log.info("[permit()] - Circuit breaker half open, sending a trial request");
+		}
+		if (state == State.HALF_OPEN) {
+			if (trialInFlight) {
+				rejected.get(type).incrementAndGet();
+				throw new UpstreamUnavailableException("The CTA API is unavailable; waiting on a trial request");
+			}
+			trialInFlight = true;
+			return true;
+		}
+		return false;
+	}
+
+	private boolean tryEnter(Semaphore bulkhead) {
+		try {
+			return bulkhead.tryAcquire(bulkheadMaxWait, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private synchronized void abandonTrial(boolean trial) {
+		if (trial) {
+			trialInFlight = false;
+		}
+	}
+
+	private synchronized void recordSuccess() {
+		if (state != State.CLOSED) {
+			log.info("[recordSuccess()] - CTA API recovered, closing the circuit breaker");
+		}
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		trialInFlight = false;
+	}
+
+	private synchronized void recordFailure(RestClientException e) {
+		consecutiveFailures++;
+		trialInFlight = false;
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			if (state != State.OPEN) {
+				timesOpened++;
+				log.error("[recordFailure()] - Opening the circuit breaker after {} consecutive failures: {}",
+						consecutiveFailures, e.toString());
+			}
+			state = State.OPEN;
+			openedAt = System.currentTimeMillis();
+		}
+	}
+
+	@Override
+	public synchronized Collection<Metric<?>> metrics() {
+		List<Metric<?>> metrics = new ArrayList<>();
+		metrics.add(new Metric<>("bustime.breaker.state", state.ordinal()));
+		metrics.add(new Metric<>("bustime.breaker.opened", timesOpened));
+		metrics.add(new Metric<>("bustime.breaker.consecutive-failures", consecutiveFailures));
+		for (RequestType type : RequestType.values()) {
+			metrics.add(new Metric<>("bustime.bulkhead." + type.format() + ".available",
+					bulkheads.get(type).availablePermits()));
+			metrics.add(new Metric<>("bustime.bulkhead." + type.format() + ".rejected", rejected.get(type).get()));
+		}
+		return metrics;
+	}
+}
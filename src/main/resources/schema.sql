@@ -0,0 +1,30 @@
+CREATE TABLE IF NOT EXISTS network_snapshot (
+	id INT PRIMARY KEY,
+	loaded_at BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS bus_line (
+	rt VARCHAR(16) PRIMARY KEY,
+	position INT NOT NULL,
+	rtnm VARCHAR(128),
+	rtclr VARCHAR(16),
+	failure VARCHAR(1024)
+);
+
+CREATE TABLE IF NOT EXISTS direction (
+	rt VARCHAR(16) NOT NULL,
+	position INT NOT NULL,
+	dir VARCHAR(32) NOT NULL,
+	PRIMARY KEY (rt, position)
+);
+
+CREATE TABLE IF NOT EXISTS direction_stop (
+	rt VARCHAR(16) NOT NULL,
+	dir_position INT NOT NULL,
+	position INT NOT NULL,
+	stpid INT NOT NULL,
+	stpnm VARCHAR(128),
+	lat DOUBLE,
+	lon DOUBLE,
+	PRIMARY KEY (rt, dir_position, position)
+);
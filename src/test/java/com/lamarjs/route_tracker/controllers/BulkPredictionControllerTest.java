@@ -0,0 +1,99 @@
+package com.lamarjs.route_tracker.controllers;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.lamarjs.route_tracker.metrics.BustimeMetrics;
+import com.lamarjs.route_tracker.models.BulkPredictions;
+import com.lamarjs.route_tracker.models.BulkPredictions.FailedChunk;
+import com.lamarjs.route_tracker.models.Prediction;
+import com.lamarjs.route_tracker.services.BulkPredictionService;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(controllers = BulkPredictionController.class, secure = false)
+public class BulkPredictionControllerTest {
+
+	@Autowired
+	MockMvc mvc;
+
+	@MockBean
+	BulkPredictionService bulkPredictionService;
+	@MockBean
+	BustimeMetrics metrics;
+
+	@Before
+	public void setUp() {
+		when(bulkPredictionService.getMaxStops()).thenReturn(3);
+		when(bulkPredictionService.getMaxTop()).thenReturn(20);
+	}
+
+	@Test
+	public void batch_answers_with_predictions_by_stop_and_failed_chunks() throws Exception {
+		Prediction prediction = new Prediction();
+		prediction.setStpid(1584);
+		BulkPredictions predictions = new BulkPredictions();
+		predictions.getPredictions().put("1584", Collections.singletonList(prediction));
+		predictions.getFailedChunks().add(new FailedChunk(Collections.singletonList("1585"), "CTA is down"));
+		when(bulkPredictionService.getPredictions(eq(Arrays.asList(1584, 1585)), eq(5), anyLong()))
+				.thenReturn(CompletableFuture.completedFuture(predictions));
+
+		MvcResult result = mvc.perform(post("/predictions/batch").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"stpids\": [\"1584\", \" 1585\", \"1584\"]}")).andExpect(request().asyncStarted())
+				.andReturn();
+
+		mvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+				.andExpect(jsonPath("$.predictions.1584[0].stpid").value(1584))
+				.andExpect(jsonPath("$.failedChunks[0].stpids[0]").value("1585"))
+				.andExpect(jsonPath("$.failedChunks[0].error").value("CTA is down"));
+	}
+
+	@Test
+	public void batch_rejects_too_many_stops() throws Exception {
+		MvcResult result = mvc.perform(post("/predictions/batch").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"stpids\": [\"1\", \"2\", \"3\", \"4\"]}")).andReturn();
+
+		mvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void batch_rejects_stop_ids_that_are_not_numbers() throws Exception {
+		MvcResult result = mvc.perform(post("/predictions/batch").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"stpids\": [\"1584\", \"Clark\"]}")).andReturn();
+
+		mvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest());
+		verify(bulkPredictionService, never()).getPredictions(anyListOf(Integer.class), anyInt(), anyLong());
+	}
+
+	@Test
+	public void batch_rejects_a_top_above_the_limit() throws Exception {
+		MvcResult result = mvc.perform(post("/predictions/batch").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"stpids\": [\"1\"], \"top\": 21}")).andReturn();
+
+		mvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest());
+	}
+}
@@ -0,0 +1,62 @@
+package com.lamarjs.route_tracker.controllers;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.exceptions.QuotaExceededException;
+import com.lamarjs.route_tracker.metrics.BustimeMetrics;
+import com.lamarjs.route_tracker.models.Stop;
+import com.lamarjs.route_tracker.services.BusLineSliceService;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(controllers = BusLineController.class, secure = false)
+public class BusLineControllerTest {
+
+	@Autowired
+	MockMvc mvc;
+
+	@MockBean
+	BusLineSliceService sliceService;
+	@MockBean
+	BustimeMetrics metrics;
+
+	@Test
+	public void stops_are_returned_for_a_known_direction() throws Exception {
+		when(sliceService.getStops("4", "Northbound"))
+				.thenReturn(Collections.singletonList(new Stop(1584, "Michigan & Balbo", 41.8732, -87.6244)));
+
+		mvc.perform(get("/buslines/4/Northbound/stops")).andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].stpid").value(1584));
+	}
+
+	@Test
+	public void unknown_route_or_direction_is_not_found() throws Exception {
+		when(sliceService.getStops("4", "Eastbound")).thenReturn(null);
+
+		mvc.perform(get("/buslines/999")).andExpect(status().isNotFound());
+		mvc.perform(get("/buslines/4/Eastbound/stops")).andExpect(status().isNotFound());
+	}
+
+	@Test
+	public void cta_errors_are_a_bad_gateway_and_shed_requests_are_unavailable() throws Exception {
+		when(sliceService.getBusLine("4")).thenThrow(new BusTimeErrorReceivedException("Invalid API access key"));
+		when(sliceService.getStops("4", "Northbound"))
+				.thenThrow(new QuotaExceededException("Daily CTA API quota exhausted"));
+
+		mvc.perform(get("/buslines/4")).andExpect(status().isBadGateway());
+		mvc.perform(get("/buslines/4/Northbound/stops")).andExpect(status().isServiceUnavailable());
+	}
+}
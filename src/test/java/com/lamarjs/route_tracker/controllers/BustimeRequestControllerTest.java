@@ -0,0 +1,157 @@
+package com.lamarjs.route_tracker.controllers;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.exceptions.QuotaExceededException;
+import com.lamarjs.route_tracker.exceptions.UpstreamUnavailableException;
+import com.lamarjs.route_tracker.metrics.BustimeMetrics;
+import com.lamarjs.route_tracker.models.Prediction;
+import com.lamarjs.route_tracker.services.NetworkCacheService;
+import com.lamarjs.route_tracker.services.NetworkPayload;
+import com.lamarjs.route_tracker.services.NetworkPayloadService;
+import com.lamarjs.route_tracker.services.PredictionCacheService;
+import com.lamarjs.route_tracker.services.PredictionResult;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(controllers = BustimeRequestController.class, secure = false)
+public class BustimeRequestControllerTest {
+
+	@Autowired
+	MockMvc mvc;
+
+	@MockBean
+	NetworkCacheService networkCache;
+	@MockBean
+	NetworkPayloadService payloadService;
+	@MockBean
+	PredictionCacheService predictionCache;
+	@MockBean
+	BustimeMetrics metrics;
+
+	NetworkPayload payload = new NetworkPayload(null, "[{\"rt\":\"4\"}]".getBytes(StandardCharsets.UTF_8),
+			new byte[] { 31, -117, 8 }, "\"abc\"", Collections.singletonMap("9", "stops: timeout"));
+
+	@Test
+	public void get_buslines_is_unavailable_until_the_network_is_loaded() throws Exception {
+		when(payloadService.getPayload()).thenReturn(Optional.empty());
+
+		mvc.perform(get("/getbuslines")).andExpect(status().isServiceUnavailable());
+	}
+
+	@Test
+	public void get_buslines_writes_the_prepared_payload() throws Exception {
+		when(payloadService.getPayload()).thenReturn(Optional.of(payload));
+
+		mvc.perform(get("/getbuslines")).andExpect(status().isOk()).andExpect(header().string("ETag", "\"abc\""))
+				.andExpect(header().string(BustimeRequestController.FAILED_ROUTES_HEADER, "9"))
+				.andExpect(jsonPath("$[0].rt").value("4"));
+		mvc.perform(get("/getbuslines").header("Accept-Encoding", "gzip, deflate")).andExpect(status().isOk())
+				.andExpect(header().string("Content-Encoding", "gzip"))
+				.andExpect(header().string("ETag", "\"abc-gzip\"")).andExpect(content().bytes(payload.getGzip()));
+	}
+
+	@Test
+	public void get_buslines_is_not_modified_when_etag_matches() throws Exception {
+		when(payloadService.getPayload()).thenReturn(Optional.of(payload));
+
+		mvc.perform(get("/getbuslines").header("If-None-Match", "\"abc\"")).andExpect(status().isNotModified())
+				.andExpect(content().bytes(new byte[0]));
+		mvc.perform(get("/getbuslines").header("If-None-Match", "\"old\"")).andExpect(status().isOk());
+	}
+
+	@Test
+	public void get_predictions_answers_asynchronously() throws Exception {
+		Prediction prediction = new Prediction();
+		prediction.setStpid(1584);
+		when(predictionCache.getPredictionResultAsync(eq("1584"), eq(""), eq(5), anyLong()))
+				.thenReturn(CompletableFuture.completedFuture(new PredictionResult(Collections.singletonList(prediction),
+						System.currentTimeMillis(), false)));
+
+		MvcResult result = mvc.perform(get("/getpredictions").param("stpids", "1584"))
+				.andExpect(request().asyncStarted()).andReturn();
+
+		mvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andExpect(jsonPath("$[0].stpid").value(1584));
+	}
+
+	@Test
+	public void get_predictions_rejects_stop_ids_that_are_not_numbers() throws Exception {
+		MvcResult result = mvc.perform(get("/getpredictions").param("stpids", "1584,{x}")).andReturn();
+
+		mvc.perform(asyncDispatch(result)).andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void get_predictions_answers_cta_errors_with_bad_gateway_and_the_message() throws Exception {
+		CompletableFuture<PredictionResult> error = new CompletableFuture<>();
+		error.completeExceptionally(new BusTimeErrorReceivedException("No arrival times"));
+		when(predictionCache.getPredictionResultAsync(eq("1584"), eq(""), eq(5), anyLong())).thenReturn(error);
+
+		MvcResult result = mvc.perform(get("/getpredictions").param("stpids", "1584"))
+				.andExpect(request().asyncStarted()).andReturn();
+
+		mvc.perform(asyncDispatch(result)).andExpect(status().isBadGateway())
+				.andExpect(jsonPath("$.msg").value("No arrival times"));
+	}
+
+	@Test
+	public void get_predictions_is_unavailable_when_quota_is_exhausted() throws Exception {
+		CompletableFuture<PredictionResult> shed = new CompletableFuture<>();
+		shed.completeExceptionally(new QuotaExceededException("Daily CTA API quota exhausted"));
+		when(predictionCache.getPredictionResultAsync(eq("1584"), eq(""), eq(5), anyLong())).thenReturn(shed);
+
+		MvcResult result = mvc.perform(get("/getpredictions").param("stpids", "1584"))
+				.andExpect(request().asyncStarted()).andReturn();
+
+		mvc.perform(asyncDispatch(result)).andExpect(status().isServiceUnavailable());
+	}
+
+	@Test
+	public void stale_predictions_carry_age_and_warning() throws Exception {
+		when(predictionCache.getPredictionResultAsync(eq("1584"), eq(""), eq(5), anyLong()))
+				.thenReturn(CompletableFuture.completedFuture(new PredictionResult(Collections.<Prediction>emptyList(),
+						System.currentTimeMillis() - 90000, true)));
+
+		MvcResult result = mvc.perform(get("/getpredictions").param("stpids", "1584"))
+				.andExpect(request().asyncStarted()).andReturn();
+
+		mvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andExpect(header().string("Age", "90"))
+				.andExpect(header().string("Warning", BustimeRequestController.STALE_WARNING));
+	}
+
+	@Test
+	public void get_predictions_is_unavailable_while_upstream_is_down_and_nothing_is_cached() throws Exception {
+		CompletableFuture<PredictionResult> down = new CompletableFuture<>();
+		down.completeExceptionally(new UpstreamUnavailableException("circuit breaker is open"));
+		when(predictionCache.getPredictionResultAsync(eq("1584"), eq(""), eq(5), anyLong())).thenReturn(down);
+
+		MvcResult result = mvc.perform(get("/getpredictions").param("stpids", "1584"))
+				.andExpect(request().asyncStarted()).andReturn();
+
+		mvc.perform(asyncDispatch(result)).andExpect(status().isServiceUnavailable())
+				.andExpect(header().string("Retry-After", "30"));
+	}
+}
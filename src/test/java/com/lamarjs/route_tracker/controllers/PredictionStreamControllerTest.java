@@ -0,0 +1,43 @@
+package com.lamarjs.route_tracker.controllers;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.lamarjs.route_tracker.metrics.BustimeMetrics;
+import com.lamarjs.route_tracker.services.PredictionStreamService;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(controllers = PredictionStreamController.class, secure = false)
+public class PredictionStreamControllerTest {
+
+	@Autowired
+	MockMvc mvc;
+
+	@MockBean
+	PredictionStreamService streamService;
+	@MockBean
+	BustimeMetrics metrics;
+
+	@Test
+	public void stream_is_opened_for_valid_stop_ids() throws Exception {
+		when(streamService.subscribe("1584", "", 5)).thenReturn(new SseEmitter());
+
+		mvc.perform(get("/predictions/stream").param("stpids", "1584")).andExpect(request().asyncStarted());
+	}
+
+	@Test
+	public void stream_rejects_stop_ids_that_are_not_numbers() throws Exception {
+		mvc.perform(get("/predictions/stream").param("stpids", "abc")).andExpect(status().isBadRequest());
+	}
+}
@@ -0,0 +1,74 @@
+package com.lamarjs.route_tracker.controllers;
+
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.lamarjs.route_tracker.metrics.BustimeMetrics;
+import com.lamarjs.route_tracker.models.NearbyStop;
+import com.lamarjs.route_tracker.models.Stop;
+import com.lamarjs.route_tracker.services.StopDirectoryIndex;
+import com.lamarjs.route_tracker.services.StopSpatialIndex;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(controllers = StopController.class, secure = false)
+public class StopControllerTest {
+
+	@Autowired
+	MockMvc mvc;
+
+	@MockBean
+	StopSpatialIndex spatialIndex;
+	@MockBean
+	StopDirectoryIndex directoryIndex;
+	@MockBean
+	BustimeMetrics metrics;
+
+	@Before
+	public void setUp() {
+		when(spatialIndex.isReady()).thenReturn(true);
+		when(directoryIndex.isReady()).thenReturn(true);
+		when(spatialIndex.nearby(anyDouble(), anyDouble(), anyDouble(), anyInt()))
+				.thenReturn(Collections.<NearbyStop>emptyList());
+		when(directoryIndex.searchByName(eq("Mich"), anyInt())).thenReturn(Collections.<Stop>emptyList());
+	}
+
+	@Test
+	public void nearby_stops_are_returned_for_a_valid_query() throws Exception {
+		mvc.perform(get("/stops/nearby?lat=41.88&lon=-87.62&radius=200&limit=5")).andExpect(status().isOk());
+	}
+
+	@Test
+	public void nearby_stops_reject_a_negative_limit_or_radius() throws Exception {
+		mvc.perform(get("/stops/nearby?lat=41.88&lon=-87.62&limit=-1")).andExpect(status().isBadRequest());
+		mvc.perform(get("/stops/nearby?lat=41.88&lon=-87.62&radius=-5")).andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void nearby_stops_reject_coordinates_out_of_range() throws Exception {
+		mvc.perform(get("/stops/nearby?lat=91&lon=-87.62")).andExpect(status().isBadRequest());
+		mvc.perform(get("/stops/nearby?lat=-90.5&lon=-87.62")).andExpect(status().isBadRequest());
+		mvc.perform(get("/stops/nearby?lat=41.88&lon=180.1")).andExpect(status().isBadRequest());
+		mvc.perform(get("/stops/nearby?lat=NaN&lon=-87.62")).andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void search_rejects_a_negative_limit() throws Exception {
+		mvc.perform(get("/stops/search?prefix=Mich&limit=-1")).andExpect(status().isBadRequest());
+		mvc.perform(get("/stops/search?prefix=Mich")).andExpect(status().isOk());
+	}
+}
@@ -0,0 +1,194 @@
+package com.lamarjs.route_tracker.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.lamarjs.route_tracker.services.BustimeAPIRequest.RequestType;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <p>
+ * An embedded stand-in for the CTA Bustime API, so that the service can be
+ * load tested without spending quota. Each {@link RequestType} endpoint
+ * answers with its sample response from
+ * src/test/resources/sample_json_responses.
+ * </p>
+ * <p>
+ * Latency is drawn from a log-normal distribution given by its median and
+ * 99th percentile, and a configurable fraction of requests answer with an
+ * error payload such as error_invalid_key.json instead.
+ * </p>
+ * 
+ * <pre>
+ * CtaStubServer stub = new CtaStubServer().latency(80, 400).errorRate(0.01).start();
+ * // bustime.api.base-url = stub.getBaseUrl()
+ * </pre>
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+public class CtaStubServer implements AutoCloseable {
+
+	/**
+	 * z-score of the 99th percentile of a standard normal distribution.
+	 */
+	private static final double Z_99 = 2.326;
+
+	private final Map<String, byte[]> responses = new HashMap<>();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private double medianLatency;
+	private double sigma;
+	private double errorRate;
+	private byte[] errorPayload;
+	private int threads = 64;
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public CtaStubServer() {
+		for (RequestType type : RequestType.values()) {
+			responses.put(type.format(), sample(type.format().substring(3) + ".json"));
+		}
+		errorPayload = sample("error_invalid_key.json");
+	}
+
+	/**
+	 * Draws response latencies from a log-normal distribution with the given
+	 * median and 99th percentile, in milliseconds. Both 0 disables latency.
+	 */
+	public CtaStubServer latency(long medianMs, long p99Ms) {
+		this.medianLatency = medianMs;
+		this.sigma = medianMs > 0 && p99Ms > medianMs ? Math.log((double) p99Ms / medianMs) / Z_99 : 0;
+		return this;
+	}
+
+	/**
+	 * @param errorRate
+	 *            The fraction of requests, from 0 to 1, answered with the error
+	 *            payload.
+	 */
+	public CtaStubServer errorRate(double errorRate) {
+		this.errorRate = errorRate;
+		return this;
+	}
+
+	/**
+	 * @param sampleName
+	 *            The sample response to answer errors with, e.g.
+	 *            "error_bad_param.json".
+	 */
+	public CtaStubServer errorPayload(String sampleName) {
+		this.errorPayload = sample(sampleName);
+		return this;
+	}
+
+	/**
+	 * @param threads
+	 *            The number of requests the stub handles at once.
+	 */
+	public CtaStubServer threads(int threads) {
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 * Starts the stub on an ephemeral port of the loopback interface.
+	 */
+	public CtaStubServer start() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/bustime/api/v2/", this::handle);
+		executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("cta-stub-"));
+		server.setExecutor(executor);
+		server.start();
+		log.info("[start()] - CTA stub listening at {}", getBaseUrl());
+		return this;
+	}
+
+	@Override
+	public void close() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return The value to use for bustime.api.base-url.
+	 */
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/bustime/api/v2/";
+	}
+
+	public long getRequestCount() {
+		return requests.get();
+	}
+
+	public long getErrorCount() {
+		return errors.get();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			requests.incrementAndGet();
+			String path = exchange.getRequestURI().getPath();
+			byte[] body = responses.get(path.substring(path.lastIndexOf('/') + 1));
+
+			sleep(ThreadLocalRandom.current());
+
+			int status = 200;
+			if (body == null) {
+				status = 404;
+				body = new byte[0];
+			} else if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+				errors.incrementAndGet();
+				body = errorPayload;
+			}
+
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void sleep(Random random) {
+		if (medianLatency <= 0) {
+			return;
+		}
+		long latency = Math.round(medianLatency * Math.exp(sigma * random.nextGaussian()));
+		try {
+			TimeUnit.MILLISECONDS.sleep(latency);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static byte[] sample(String name) {
+		try {
+			return IOUtils.toString(
+					CtaStubServer.class.getClassLoader().getResourceAsStream("sample_json_responses/" + name),
+					StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8);
+		} catch (IOException | NullPointerException e) {
+			throw new IllegalArgumentException("No sample response named " + name, e);
+		}
+	}
+}
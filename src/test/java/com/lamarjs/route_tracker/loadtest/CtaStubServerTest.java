@@ -0,0 +1,63 @@
+package com.lamarjs.route_tracker.loadtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CtaStubServerTest {
+
+	CtaStubServer stub;
+
+	@Before
+	public void setUp() throws Exception {
+		stub = new CtaStubServer().start();
+	}
+
+	@After
+	public void tearDown() {
+		stub.close();
+	}
+
+	@Test
+	public void stub_answers_each_request_type_with_its_sample() throws Exception {
+		String routes = IOUtils.toString(new URL(stub.getBaseUrl() + "getroutes?key=x&format=json"),
+				StandardCharsets.UTF_8);
+		String stops = IOUtils.toString(new URL(stub.getBaseUrl() + "getstops?key=x&rt=4&dir=Northbound"),
+				StandardCharsets.UTF_8);
+
+		assertTrue(routes.contains("\"routes\""));
+		assertTrue(stops.contains("\"stops\""));
+		assertEquals(2, stub.getRequestCount());
+	}
+
+	@Test
+	public void stub_answers_with_error_payload_at_error_rate() throws Exception {
+		stub.errorRate(1).errorPayload("error_bad_param.json");
+
+		String body = IOUtils.toString(new URL(stub.getBaseUrl() + "getpredictions?key=x&stpid=1"),
+				StandardCharsets.UTF_8);
+
+		assertTrue(body.contains("\"error\""));
+		assertEquals(1, stub.getErrorCount());
+	}
+
+	@Test
+	public void load_driver_reports_throughput_and_percentiles() throws Exception {
+		stub.latency(5, 20);
+
+		LoadReport report = new LoadDriver(stub.getBaseUrl().replace("/bustime/api/v2/", ""),
+				Arrays.asList("/bustime/api/v2/getroutes", "/bustime/api/v2/getpredictions"), 100, 8).run(500);
+
+		assertEquals(50, report.getRequests());
+		assertEquals(0, report.getErrors());
+		assertTrue(report.getP50() > 0 && report.getP50() <= report.getP99() && report.getP99() <= report.getMax());
+	}
+}
@@ -0,0 +1,139 @@
+package com.lamarjs.route_tracker.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An open loop load generator: requests are started at a fixed target rate
+ * whether or not earlier ones have completed, cycling through the given paths.
+ * Each latency is measured from the time the request was due, so requests that
+ * queue behind a saturated worker pool are counted as slow instead of being
+ * silently sent later.
+ * 
+ * @author Lamar J. Smith
+ */
+@Slf4j
+public class LoadDriver {
+
+	private final String baseUrl;
+	private final List<String> paths;
+	private final double rate;
+	private final int concurrency;
+
+	/**
+	 * @param baseUrl
+	 *            e.g. "http://127.0.0.1:8080"
+	 * @param paths
+	 *            Paths with their query strings, requested in turn, e.g.
+	 *            "/getpredictions?stpids=1584".
+	 * @param rate
+	 *            Target requests per second.
+	 * @param concurrency
+	 *            The most requests in flight at once.
+	 */
+	public LoadDriver(String baseUrl, List<String> paths, double rate, int concurrency) {
+		this.baseUrl = baseUrl;
+		this.paths = paths;
+		this.rate = rate;
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Sends requests at the target rate for the given duration, then waits for
+	 * the requests still in flight.
+	 */
+	public LoadReport run(long durationMs) throws InterruptedException {
+
+		int total = (int) Math.max(1, Math.round(rate * durationMs / 1000.0));
+		long[] latencies = new long[total];
+		AtomicInteger completed = new AtomicInteger();
+		AtomicLong errors = new AtomicLong();
+		AtomicInteger sequence = new AtomicInteger();
+		CountDownLatch submitted = new CountDownLatch(total);
+
+		ScheduledExecutorService scheduler = Executors
+				.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("load-scheduler-"));
+		ExecutorService workers = Executors.newFixedThreadPool(concurrency,
+				new CustomizableThreadFactory("load-worker-"));
+
+		long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+		long start = System.nanoTime();
+
+		scheduler.scheduleAtFixedRate(() -> {
+			int n = sequence.getAndIncrement();
+			if (n >= total) {
+				return;
+			}
+			long due = start + n * periodNanos;
+			String path = paths.get(n % paths.size());
+			workers.execute(() -> {
+				if (!send(path)) {
+					errors.incrementAndGet();
+				}
+				latencies[completed.getAndIncrement()] = System.nanoTime() - due;
+			});
+			submitted.countDown();
+		}, 0, periodNanos, TimeUnit.NANOSECONDS);
+
+		submitted.await();
+		scheduler.shutdownNow();
+		workers.shutdown();
+		workers.awaitTermination(1, TimeUnit.MINUTES);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		long[] recorded = Arrays.copyOf(latencies, completed.get());
+		Arrays.sort(recorded);
+		LoadReport report = new LoadReport(recorded.length, errors.get(), elapsed, percentile(recorded, 0.50),
+				percentile(recorded, 0.99), percentile(recorded, 0.999),
+				recorded.length == 0 ? 0 : toMillis(recorded[recorded.length - 1]));
+		log.info("[run()] - {}", report);
+		return report;
+	}
+
+	private boolean send(String path) {
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+			connection.setRequestProperty("Accept-Encoding", "gzip");
+			int status = connection.getResponseCode();
+			InputStream body = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+			if (body != null) {
+				try (InputStream in = body) {
+					IOUtils.toByteArray(in);
+				}
+			}
+			return status < 300 || status == HttpURLConnection.HTTP_NOT_MODIFIED;
+		} catch (IOException e) {
+			log.debug("[send()] - Request to {} failed: {}", path, e.toString());
+			return false;
+		}
+	}
+
+	private static double percentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return toMillis(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+	}
+
+	private static double toMillis(long nanos) {
+		return nanos / 1e6;
+	}
+}
@@ -0,0 +1,33 @@
+package com.lamarjs.route_tracker.loadtest;
+
+import lombok.Value;
+
+/**
+ * The outcome of one {@link LoadDriver} run. Latencies are in milliseconds
+ * and are measured from when each request was scheduled to be sent, so that a
+ * slow server cannot hide queueing delay by slowing the driver down.
+ */
+@Value
+public class LoadReport {
+
+	private final long requests;
+	private final long errors; // non 2xx/304 responses and I/O failures
+	private final long durationMs;
+	private final double p50;
+	private final double p99;
+	private final double p999;
+	private final double max;
+
+	/**
+	 * @return Completed requests per second.
+	 */
+	public double getThroughput() {
+		return durationMs == 0 ? 0 : requests * 1000.0 / durationMs;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d requests (%d errors) in %dms: %.1f req/s, p50=%.1fms p99=%.1fms p999=%.1fms max=%.1fms",
+				requests, errors, durationMs, getThroughput(), p50, p99, p999, max);
+	}
+}
@@ -0,0 +1,82 @@
+package com.lamarjs.route_tracker.loadtest;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.lamarjs.route_tracker.Main;
+
+/**
+ * Runs the whole service against a {@link CtaStubServer} and drives
+ * /getbuslines and /getpredictions with a {@link LoadDriver}, printing a
+ * {@link LoadReport} for each. Run it from the test classpath, e.g.
+ * 
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.lamarjs.route_tracker.loadtest.LoadTest \
+ *     -Dexec.args="200 30000 80 400 0.01"
+ * </pre>
+ * 
+ * Arguments, all optional: target requests per second (200), duration in ms
+ * (30000), stub median and p99 latency in ms (80, 400) and stub error rate
+ * (0.01).
+ */
+public class LoadTest {
+
+	public static void main(String[] args) throws Exception {
+		double rate = args.length > 0 ? Double.parseDouble(args[0]) : 200;
+		long duration = args.length > 1 ? Long.parseLong(args[1]) : 30000;
+		long median = args.length > 2 ? Long.parseLong(args[2]) : 80;
+		long p99 = args.length > 3 ? Long.parseLong(args[3]) : 400;
+		double errorRate = args.length > 4 ? Double.parseDouble(args[4]) : 0.01;
+
+		// The devtools restarter would otherwise relaunch this class.
+		System.setProperty("spring.devtools.restart.enabled", "false");
+
+		// An invalid key error would take the stub's key out of rotation for the
+		// rest of the run, so errors are answered with a bad parameter instead.
+		try (CtaStubServer stub = new CtaStubServer().latency(median, p99).errorRate(errorRate)
+				.errorPayload("error_bad_param.json").start()) {
+
+			ConfigurableApplicationContext app = new SpringApplicationBuilder(Main.class).run("--server.port=0",
+					"--security.basic.enabled=false", "--bustime.api.base-url=" + stub.getBaseUrl(),
+					"--bustime.api.keys=loadtest-key-1,loadtest-key-2",
+					"--spring.datasource.url=jdbc:hsqldb:mem:loadtest", "--bustime.quota.daily-limit=100000000",
+					"--bustime.quota.per-second=100000");
+			try {
+				String service = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+				awaitNetwork(service);
+
+				LoadReport buslines = new LoadDriver(service, Arrays.asList("/getbuslines"), rate, 64).run(duration);
+				LoadReport predictions = new LoadDriver(service,
+						Arrays.asList("/getpredictions?stpids=1584", "/getpredictions?stpids=1585",
+								"/getpredictions?stpids=1584,1585&rts=4"),
+						rate, 64).run(duration);
+
+				System.out.println("/getbuslines    " + buslines);
+				System.out.println("/getpredictions " + predictions);
+				System.out.println("CTA stub served " + stub.getRequestCount() + " requests ("
+						+ stub.getErrorCount() + " errors)");
+			} finally {
+				app.close();
+			}
+		}
+	}
+
+	private static void awaitNetwork(String service) throws IOException, InterruptedException {
+		for (int attempt = 0; attempt < 600; attempt++) {
+			HttpURLConnection connection = (HttpURLConnection) new URL(service + "/getbuslines").openConnection();
+			if (connection.getResponseCode() == 200) {
+				return;
+			}
+			connection.disconnect();
+			TimeUnit.MILLISECONDS.sleep(500);
+		}
+		throw new IllegalStateException("The network was not loaded from the stub");
+	}
+}
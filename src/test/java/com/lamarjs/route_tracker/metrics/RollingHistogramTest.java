@@ -0,0 +1,41 @@
+package com.lamarjs.route_tracker.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RollingHistogramTest {
+
+	@Test
+	public void percentiles_come_from_recorded_values() {
+		RollingHistogram histogram = new RollingHistogram();
+		for (int value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(50.5, histogram.getMean(), 0);
+		assertEquals(50, histogram.getPercentile(50));
+		assertEquals(99, histogram.getPercentile(99));
+		assertEquals(100, histogram.getMax());
+	}
+
+	@Test
+	public void percentiles_only_cover_the_most_recent_window() {
+		RollingHistogram histogram = new RollingHistogram();
+		for (int i = 0; i < RollingHistogram.WINDOW; i++) {
+			histogram.record(1000);
+		}
+		for (int i = 0; i < RollingHistogram.WINDOW; i++) {
+			histogram.record(10);
+		}
+
+		assertEquals(10, histogram.getPercentile(99));
+		assertEquals(1000, histogram.getMax());
+	}
+
+	@Test
+	public void empty_histogram_reports_zero() {
+		assertEquals(0, new RollingHistogram().getPercentile(50));
+	}
+}
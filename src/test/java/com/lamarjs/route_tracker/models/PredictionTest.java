@@ -0,0 +1,49 @@
+package com.lamarjs.route_tracker.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PredictionTest {
+
+	@Test
+	public void timestamps_are_parsed_in_chicago_time() {
+		Prediction prediction = new Prediction();
+		prediction.setTmstmp("20170314 11:25");
+		prediction.setPrdtm("20170314 11:32");
+
+		assertEquals(ZonedDateTime.parse("2017-03-14T11:25-05:00").toInstant().toEpochMilli(),
+				prediction.getTmstmpEpoch());
+		assertEquals(prediction.getTmstmpEpoch() + TimeUnit.MINUTES.toMillis(7), prediction.getPrdtmEpoch());
+		assertEquals(0, Prediction.parseEpoch("not a time"));
+	}
+
+	@Test
+	public void countdown_is_recomputed_on_a_copy() {
+		Prediction prediction = new Prediction();
+		prediction.setPrdtm("20170314 11:32");
+		prediction.setPrdctdn("7");
+		long prdtm = prediction.getPrdtmEpoch();
+
+		assertEquals("4", prediction.withCountdownAt(prdtm - TimeUnit.MINUTES.toMillis(4)).getPrdctdn());
+		assertEquals(Prediction.DUE, prediction.withCountdownAt(prdtm - 90000).getPrdctdn());
+		assertEquals("7", prediction.getPrdctdn());
+		assertFalse(prediction.isDepartedAt(prdtm + 30000));
+		assertTrue(prediction.isDepartedAt(prdtm + TimeUnit.MINUTES.toMillis(2)));
+	}
+
+	@Test
+	public void delayed_countdown_is_kept() {
+		Prediction prediction = new Prediction();
+		prediction.setPrdtm("20170314 11:32");
+		prediction.setPrdctdn(Prediction.DELAYED);
+		prediction.setDly(true);
+
+		assertEquals(Prediction.DELAYED, prediction.withCountdownAt(0).getPrdctdn());
+	}
+}
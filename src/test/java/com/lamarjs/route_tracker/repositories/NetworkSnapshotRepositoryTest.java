@@ -0,0 +1,54 @@
+package com.lamarjs.route_tracker.repositories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+import com.lamarjs.route_tracker.models.Stop;
+import com.lamarjs.route_tracker.services.NetworkSnapshot;
+
+@RunWith(SpringRunner.class)
+@JdbcTest
+@Import(NetworkSnapshotRepository.class)
+public class NetworkSnapshotRepositoryTest {
+
+	@Autowired
+	NetworkSnapshotRepository snapshotRepository;
+
+	@Test
+	public void load_returns_empty_when_nothing_saved() {
+		assertFalse(snapshotRepository.load().isPresent());
+	}
+
+	@Test
+	public void save_then_load_round_trips_the_network() {
+		Direction northbound = new Direction("Northbound",
+				Arrays.asList(new Stop(1509, "1509 S Michigan", 41.861, -87.624),
+						new Stop(1584, "Michigan & Balbo", 41.873, -87.624)));
+		BusLine line = new BusLine("1", "Bronzeville/Union Station", "#336633",
+				Arrays.asList(northbound, new Direction("Southbound", Collections.<Stop>emptyList())));
+		BusLine failed = new BusLine("X9", "Ashland Express", "#000000");
+
+		snapshotRepository.save(new NetworkSnapshot(Arrays.asList(line, failed),
+				Collections.singletonMap("X9", "directions: timeout"), 1490000000000L));
+		NetworkSnapshot loaded = snapshotRepository.load().get();
+
+		assertEquals(1490000000000L, loaded.getLoadedAt());
+		assertEquals(line, loaded.getBusLines().get(0));
+		assertEquals("X9", loaded.getBusLines().get(1).getRt());
+		assertTrue(loaded.getBusLines().get(1).getDirections().isEmpty());
+		assertEquals("directions: timeout", loaded.getFailures().get("X9"));
+	}
+}
@@ -0,0 +1,94 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import com.lamarjs.route_tracker.exceptions.QuotaExceededException;
+import com.lamarjs.route_tracker.services.ApiKeyPool.Selection;
+import com.lamarjs.route_tracker.services.ApiKeyPool.State;
+
+public class ApiKeyPoolTest {
+
+	@Test
+	public void keys_are_handed_out_round_robin() {
+		ApiKeyPool pool = new ApiKeyPool(" a, b,,c,a ", Selection.ROUND_ROBIN);
+
+		List<String> keys = Arrays.asList(pool.next(), pool.next(), pool.next(), pool.next());
+
+		assertEquals(Arrays.asList("a", "b", "c", "a"), keys);
+		assertEquals(3, pool.getActiveCount());
+	}
+
+	@Test
+	public void least_used_key_is_handed_out() {
+		ApiKeyPool pool = new ApiKeyPool("a,b,c", Selection.LEAST_USED);
+		pool.recordUse("a");
+		pool.recordUse("a");
+		pool.recordUse("c");
+
+		assertEquals("b", pool.next());
+	}
+
+	@Test
+	public void least_used_counts_keys_as_they_are_handed_out() {
+		ApiKeyPool pool = new ApiKeyPool("a,b", Selection.LEAST_USED);
+		pool.recordUse("b");
+
+		Set<String> burst = new HashSet<>(Arrays.asList(pool.next(), pool.next(), pool.next()));
+
+		assertEquals(new HashSet<>(Arrays.asList("a", "b")), burst);
+	}
+
+	@Test
+	public void keys_that_can_not_be_used_are_taken_out_of_rotation() {
+		ApiKeyPool pool = new ApiKeyPool("a,b,c", Selection.ROUND_ROBIN);
+
+		pool.recordError("a", "Invalid API access key supplied");
+		pool.recordError("b", "Transaction limit for current day has been exceeded.");
+		pool.recordError("c", "No arrival times");
+
+		assertEquals(State.INVALID, pool.getState("a"));
+		assertEquals(State.EXHAUSTED, pool.getState("b"));
+		assertEquals(1, pool.getActiveCount());
+		assertEquals("c", pool.next());
+		assertEquals("c", pool.next());
+	}
+
+	@Test(expected = QuotaExceededException.class)
+	public void empty_rotation_sheds_requests() {
+		ApiKeyPool pool = new ApiKeyPool("a", Selection.ROUND_ROBIN);
+		pool.recordError("a", "Invalid API access key supplied");
+
+		pool.next();
+	}
+
+	@Test
+	public void no_keys_means_no_key() {
+		assertNull(new ApiKeyPool("", Selection.ROUND_ROBIN).next());
+	}
+
+	@Test
+	public void metrics_count_per_key_without_publishing_the_key() {
+		ApiKeyPool pool = new ApiKeyPool("secret-a,secret-b", Selection.ROUND_ROBIN);
+		pool.recordUse("secret-b");
+		pool.recordUse("secret-b");
+
+		long requests = -1;
+		for (Metric<?> metric : pool.metrics()) {
+			assertFalse(metric.getName().contains("secret"));
+			if (metric.getName().equals("bustime.apikey.1.daily_used")) {
+				requests = metric.getValue().longValue();
+			}
+		}
+		assertEquals(2, requests);
+	}
+}
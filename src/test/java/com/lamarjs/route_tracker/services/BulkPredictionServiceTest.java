@@ -0,0 +1,106 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.lamarjs.route_tracker.models.BulkPredictions;
+import com.lamarjs.route_tracker.models.Prediction;
+
+public class BulkPredictionServiceTest {
+
+	BustimeAPIRequest request;
+	BulkPredictionService bulkPredictionService;
+
+	@Before
+	public void setUp() {
+		request = mock(BustimeAPIRequest.class);
+		bulkPredictionService = new BulkPredictionService(request, 500, 20);
+	}
+
+	@Test
+	public void stop_ids_are_parsed_and_deduplicated_in_order() {
+		assertEquals(Arrays.asList(3, 1, 2),
+				BulkPredictionService.normalize(Arrays.asList(" 3", "1", "", null, "03 ", "2")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void stop_ids_that_are_not_numbers_are_rejected() {
+		BulkPredictionService.normalize(Arrays.asList("1584", "Clark"));
+	}
+
+	@Test
+	public void stops_are_requested_in_chunks_of_ten_and_merged_by_stop() throws Exception {
+		List<Integer> stpids = new ArrayList<>();
+		for (int stpid = 1; stpid <= 25; stpid++) {
+			stpids.add(stpid);
+		}
+		when(request.requestPredictionBatchAsync(anyString(), anyInt(), anyLong())).thenReturn(
+				CompletableFuture.completedFuture(new PredictionBatch(Collections.<Prediction>emptyList(),
+						Collections.<String, String>emptyMap())));
+		when(request.requestPredictionBatchAsync(eq("1,2,3,4,5,6,7,8,9,10"), eq(20), anyLong()))
+				.thenReturn(CompletableFuture.completedFuture(new PredictionBatch(
+						Arrays.asList(prediction(1), prediction(1), prediction(1), prediction(2)),
+						Collections.singletonMap("3", "No arrival times"))));
+
+		BulkPredictions predictions = bulkPredictionService.getPredictions(stpids, 2, Long.MAX_VALUE).get(5,
+				TimeUnit.SECONDS);
+
+		verify(request, times(3)).requestPredictionBatchAsync(anyString(), anyInt(), anyLong());
+		verify(request).requestPredictionBatchAsync(eq("21,22,23,24,25"), eq(10), anyLong());
+		assertEquals(24, predictions.getPredictions().size());
+		assertEquals(2, predictions.getPredictions().get("1").size());
+		assertEquals(1, predictions.getPredictions().get("2").size());
+		assertTrue(predictions.getPredictions().get("25").isEmpty());
+		assertEquals("No arrival times", predictions.getStopErrors().get("3"));
+		assertTrue(predictions.getFailedChunks().isEmpty());
+	}
+
+	@Test
+	public void failed_chunk_is_reported_without_failing_the_others() throws Exception {
+		List<Integer> stpids = new ArrayList<>();
+		for (int stpid = 1; stpid <= 15; stpid++) {
+			stpids.add(stpid);
+		}
+		CompletableFuture<PredictionBatch> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new ResourceAccessException("CTA is down"));
+		when(request.requestPredictionBatchAsync(eq("1,2,3,4,5,6,7,8,9,10"), anyInt(), anyLong())).thenReturn(failed);
+		when(request.requestPredictionBatchAsync(eq("11,12,13,14,15"), anyInt(), anyLong()))
+				.thenReturn(CompletableFuture.completedFuture(new PredictionBatch(Arrays.asList(prediction(11)),
+						Collections.<String, String>emptyMap())));
+
+		BulkPredictions predictions = bulkPredictionService.getPredictions(stpids, 5, Long.MAX_VALUE).get(5,
+				TimeUnit.SECONDS);
+
+		assertEquals(1, predictions.getFailedChunks().size());
+		assertEquals(Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8", "9", "10"),
+				predictions.getFailedChunks().get(0).getStpids());
+		assertEquals("CTA is down", predictions.getFailedChunks().get(0).getError());
+		assertEquals(Arrays.asList("11", "12", "13", "14", "15"),
+				new ArrayList<>(predictions.getPredictions().keySet()));
+	}
+
+	private Prediction prediction(int stpid) {
+		Prediction prediction = new Prediction();
+		prediction.setStpid(stpid);
+		return prediction;
+	}
+}
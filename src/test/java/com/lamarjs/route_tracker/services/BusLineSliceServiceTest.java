@@ -0,0 +1,123 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+import com.lamarjs.route_tracker.models.Stop;
+
+public class BusLineSliceServiceTest {
+
+	BustimeAPIRequest requestService;
+	NetworkCacheService networkCache;
+	BusLineSliceService sliceService;
+
+	List<Stop> northboundStops = Arrays.asList(new Stop(1584, "Michigan & Balbo", 41.8732, -87.6244));
+
+	@Before
+	public void setUp() throws Exception {
+		requestService = mock(BustimeAPIRequest.class);
+		networkCache = mock(NetworkCacheService.class);
+		when(networkCache.getSnapshot()).thenReturn(Optional.empty());
+		sliceService = new BusLineSliceService(requestService, networkCache, 5000);
+
+		when(requestService.requestRoutes(anyLong())).thenReturn(Arrays.asList(
+				new BusLine("4", "Cottage Grove", "#ff0000"), new BusLine("3", "King Drive", "#00ff00")));
+		when(requestService.requestDirections(eq("4"), anyLong()))
+				.thenReturn(Arrays.asList(new Direction("Northbound", null), new Direction("Southbound", null)));
+		when(requestService.requestStops(eq("4"), eq("Northbound"), anyLong())).thenReturn(northboundStops);
+	}
+
+	@Test
+	public void getBusLine_initializes_only_the_requested_route_once() throws Exception {
+		BusLine line = sliceService.getBusLine("4");
+		sliceService.getBusLine("4");
+
+		assertEquals("Cottage Grove", line.getRtnm());
+		assertEquals(2, line.getDirections().size());
+		verify(requestService, times(1)).requestRoutes(anyLong());
+		verify(requestService, times(1)).requestDirections(eq("4"), anyLong());
+		verify(requestService, never()).requestDirections(eq("3"), anyLong());
+		verify(requestService, never()).requestStops(eq("4"), eq("Northbound"), anyLong());
+	}
+
+	@Test
+	public void getBusLine_returns_null_for_unknown_route() throws Exception {
+		assertNull(sliceService.getBusLine("999"));
+	}
+
+	@Test
+	public void getStops_memoizes_each_direction() throws Exception {
+		assertEquals(northboundStops, sliceService.getStops("4", "Northbound"));
+		assertEquals(northboundStops, sliceService.getStops("4", "Northbound"));
+
+		verify(requestService, times(1)).requestStops(eq("4"), eq("Northbound"), anyLong());
+	}
+
+	@Test
+	public void failed_slice_is_retried() throws Exception {
+		when(requestService.requestStops(eq("4"), eq("Southbound"), anyLong()))
+				.thenThrow(new BusTimeErrorReceivedException("down")).thenReturn(northboundStops);
+
+		try {
+			sliceService.getStops("4", "Southbound");
+		} catch (BusTimeErrorReceivedException expected) {
+		}
+
+		assertEquals(northboundStops, sliceService.getStops("4", "Southbound"));
+	}
+
+	@Test
+	public void slices_come_from_the_snapshot_when_loaded() throws Exception {
+		BusLine loaded = new BusLine("4", "Cottage Grove", "#ff0000",
+				Collections.singletonList(new Direction("Northbound", northboundStops)));
+		when(networkCache.getSnapshot()).thenReturn(Optional.of(new NetworkSnapshot(Collections.singletonList(loaded),
+				Collections.<String, String>emptyMap(), System.currentTimeMillis())));
+
+		assertNull(sliceService.getBusLine("4").getDirections().get(0).getStops());
+		assertEquals(northboundStops, sliceService.getStops("4", "Northbound"));
+		verify(requestService, never()).requestDirections(eq("4"), anyLong());
+		verify(requestService, never()).requestStops(eq("4"), eq("Northbound"), anyLong());
+	}
+
+	@Test
+	public void unknown_direction_is_not_requested() throws Exception {
+		assertNull(sliceService.getStops("4", "Eastbound"));
+		assertNull(sliceService.getStops("999", "Northbound"));
+
+		verify(requestService, never()).requestStops(anyString(), anyString(), anyLong());
+	}
+
+	@Test
+	public void unknown_route_and_direction_are_answered_from_the_snapshot() throws Exception {
+		BusLine loaded = new BusLine("4", "Cottage Grove", "#ff0000",
+				Collections.singletonList(new Direction("Northbound", northboundStops)));
+		when(networkCache.getSnapshot()).thenReturn(Optional.of(new NetworkSnapshot(Collections.singletonList(loaded),
+				Collections.<String, String>emptyMap(), System.currentTimeMillis())));
+
+		assertNull(sliceService.getBusLine("999"));
+		assertNull(sliceService.getStops("999", "Northbound"));
+		assertNull(sliceService.getStops("4", "Eastbound"));
+		verify(requestService, never()).requestRoutes(anyLong());
+		verify(requestService, never()).requestDirections(anyString(), anyLong());
+		verify(requestService, never()).requestStops(anyString(), anyString(), anyLong());
+	}
+}
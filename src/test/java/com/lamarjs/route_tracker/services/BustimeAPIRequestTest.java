@@ -60,9 +60,8 @@ public class BustimeAPIRequestTest extends junit.framework.TestSuite {
 	public void send_method_populates_response_body_when_request_url_is_set()
 			throws MalformedURLException, BusTimeErrorReceivedException {
 
-		request.setRequestURL(new URL(sampleFiles.get("urls").get("routes")));
-		request.send();
-		assertNotNull(request.getResponseBody());
+		BustimeResponse response = request.send(new URL(sampleFiles.get("urls").get("routes")));
+		assertNotNull(response.getResponseBody());
 	}
 
 	@Test
@@ -71,13 +70,8 @@ public class BustimeAPIRequestTest extends junit.framework.TestSuite {
 
 		request.setKey(System.getenv("BTRK"));
 
-		try {
-			request.requestRoutes();
-		} catch (BusTimeErrorReceivedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		assertNotNull(request.getResponseBody());
+		BustimeResponse response = request.send(request.buildRoutesRequestURL());
+		assertNotNull(response.getResponseBody());
 	}
 
 	///////////////////////////////////
@@ -86,9 +80,9 @@ public class BustimeAPIRequestTest extends junit.framework.TestSuite {
 
 	@Test
 	public void build_routes_request_url_has_correct_format() throws MalformedURLException {
-		request.buildRoutesRequestURL();
+		URL requestURL = request.buildRoutesRequestURL();
 
-		assertEquals(sampleFiles.get("urls").get("routes"), request.getRequestURL().toString());
+		assertEquals(sampleFiles.get("urls").get("routes"), requestURL.toString());
 	}
 
 	//////////////////////////////////
@@ -114,7 +108,7 @@ public class BustimeAPIRequestTest extends junit.framework.TestSuite {
 		String actual = "";
 		String expected = "Invalid API access key supplied";
 		try {
-			request.requestRoutes(request.buildRoutesRequestURL().getRequestURL());
+			request.requestRoutes(request.buildRoutesRequestURL());
 		} catch (BusTimeErrorReceivedException e) {
 			actual = e.getMessage();
 		}
@@ -127,8 +121,7 @@ public class BustimeAPIRequestTest extends junit.framework.TestSuite {
 			throws RestClientException, MalformedURLException, URISyntaxException {
 		String actual = null;
 		String expected = null;
-		request.setResponseBody(sampleFiles.get("json").get("routes"));
-		actual = request.getBustimeError(request.getResponseBody());
+		actual = request.getBustimeError(sampleFiles.get("json").get("routes"));
 
 		assertTrue(actual == expected);
 	}
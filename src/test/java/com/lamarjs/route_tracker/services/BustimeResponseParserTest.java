@@ -0,0 +1,76 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lamarjs.route_tracker.TestUtils;
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+import com.lamarjs.route_tracker.models.Prediction;
+import com.lamarjs.route_tracker.models.Stop;
+
+public class BustimeResponseParserTest {
+
+	static HashMap<String, HashMap<String, String>> sampleFiles;
+	BustimeResponseParser parser = new BustimeResponseParser(new ObjectMapper());
+
+	@BeforeClass
+	public static void onlyOnce() throws IOException {
+		sampleFiles = TestUtils.loadSampleFiles();
+	}
+
+	@Test
+	public void parse_routes_binds_every_busline() throws IOException {
+		ParsedResponse<BusLine> response = parser.parse(sample("routes"), "routes", BusLine.class);
+
+		assertNull(response.getFirstError());
+		assertTrue(response.getItems().size() > 100);
+		assertEquals("Bronzeville/Union Station", response.getItems().get(0).getRtnm());
+		assertEquals("#336633", response.getItems().get(0).getRtclr());
+	}
+
+	@Test
+	public void parse_directions_stops_and_predictions() throws IOException {
+		assertEquals("Southbound",
+				parser.parse(sample("directions"), "directions", Direction.class).getItems().get(1).getDir());
+
+		Stop stop = parser.parse(sample("stops"), "stops", Stop.class).getItems().get(0);
+		assertEquals(2970, stop.getStpid());
+		assertEquals(41.70927805996, stop.getLat(), 0);
+
+		Prediction prediction = parser.parse(sample("predictions"), "prd", Prediction.class).getItems().get(0);
+		assertEquals(1584, prediction.getStpid());
+		assertEquals("Michigan & Balbo", prediction.getStpnm());
+	}
+
+	@Test
+	public void parse_error_response_returns_error_and_no_items() throws IOException {
+		ParsedResponse<BusLine> response = parser.parse(sample("errorInvalidKey"), "routes", BusLine.class);
+
+		assertEquals("Invalid API access key supplied", response.getFirstError());
+		assertTrue(response.getItems().isEmpty());
+	}
+
+	@Test
+	public void parse_keeps_the_route_of_route_specific_errors() throws IOException {
+		ParsedResponse<Direction> response = parser.parse(sample("errorBadParam"), "directions", Direction.class);
+
+		assertEquals("1000", response.getErrors().get(0).getRt());
+		assertEquals("No data found for parameter", response.getFirstError());
+	}
+
+	private InputStream sample(String name) {
+		return new ByteArrayInputStream(sampleFiles.get("json").get(name).getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,75 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+import com.lamarjs.route_tracker.models.Stop;
+
+public class CompactNetworkTest {
+
+	List<BusLine> busLines;
+	CompactNetwork network;
+
+	@Before
+	public void setUp() {
+		Stop balbo = new Stop(1584, "Michigan & Balbo", 41.8732, -87.6244);
+		Stop jackson = new Stop(1585, "Michigan & Jackson", 41.8781, -87.6244);
+		Stop madison = new Stop(1600, "Madison & State", 41.8820, -87.6278);
+		busLines = Arrays.asList(
+				new BusLine("4", "Cottage Grove", "#ff0000",
+						Arrays.asList(new Direction("Northbound", Arrays.asList(balbo, jackson)),
+								new Direction("Southbound", Arrays.asList(jackson, balbo)))),
+				new BusLine("3", "King Drive", "#00ff00",
+						Collections.singletonList(new Direction("Northbound", Arrays.asList(madison, balbo)))),
+				new BusLine("X9", "Ashland Express", "#0000ff"));
+		network = CompactNetwork.of(busLines);
+	}
+
+	@Test
+	public void view_matches_source_network() {
+		assertEquals(busLines, network.getBusLines());
+		assertNull(network.getBusLines().get(2).getDirections());
+	}
+
+	@Test
+	public void stops_are_stored_once_sorted_by_id() {
+		assertEquals(3, network.getStopCount());
+		assertEquals(1584, network.getStpid(0));
+		assertEquals(1600, network.getStpid(2));
+		assertEquals(1, network.indexOf(1585));
+		assertTrue(network.indexOf(9999) < 0);
+		assertEquals(new Stop(1585, "Michigan & Jackson", 41.8781, -87.6244), network.getStop(1));
+	}
+
+	@Test
+	public void direction_names_are_interned() {
+		assertSame(network.getBusLines().get(0).getDirections().get(0).getDir(),
+				network.getBusLines().get(1).getDirections().get(0).getDir());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void view_is_read_only() {
+		network.getBusLines().get(0).getDirections().get(0).getStops().add(new Stop());
+	}
+
+	@Test
+	public void changes_to_a_view_do_not_reach_the_network() {
+		BusLine line = network.getBusLines().get(0);
+		line.setRtnm("Renamed");
+		line.getDirections().get(0).setStops(null);
+
+		assertEquals("Cottage Grove", network.getBusLines().get(0).getRtnm());
+		assertEquals(2, network.getBusLines().get(0).getDirections().get(0).getStops().size());
+	}
+}
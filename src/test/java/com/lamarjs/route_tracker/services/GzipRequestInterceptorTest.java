@@ -0,0 +1,51 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+public class GzipRequestInterceptorTest {
+
+	private static final String BODY = "{\"bustime-response\": {\"routes\": []}}";
+
+	GzipRequestInterceptor interceptor = new GzipRequestInterceptor();
+	MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET,
+			URI.create("http://localhost/bustime/api/v2/getroutes"));
+
+	@Test
+	public void gzip_response_is_requested_and_inflated() throws Exception {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(BODY.getBytes(StandardCharsets.UTF_8));
+		}
+		MockClientHttpResponse upstream = new MockClientHttpResponse(compressed.toByteArray(), HttpStatus.OK);
+		upstream.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+		ClientHttpResponse response = interceptor.intercept(request, new byte[0], (req, body) -> upstream);
+
+		assertEquals("gzip", request.getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+		assertEquals(BODY, IOUtils.toString(response.getBody(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void uncompressed_response_is_passed_through() throws Exception {
+		MockClientHttpResponse upstream = new MockClientHttpResponse(BODY.getBytes(StandardCharsets.UTF_8),
+				HttpStatus.OK);
+
+		ClientHttpResponse response = interceptor.intercept(request, new byte[0], (req, body) -> upstream);
+
+		assertEquals(BODY, IOUtils.toString(response.getBody(), StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,117 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.repositories.NetworkSnapshotRepository;
+
+public class NetworkCacheServiceTest {
+
+	NetworkInitializationService initializationService;
+	NetworkSnapshotRepository snapshotRepository;
+	NetworkCacheService networkCache;
+
+	@Before
+	public void setUp() {
+		initializationService = mock(NetworkInitializationService.class);
+		snapshotRepository = mock(NetworkSnapshotRepository.class);
+		networkCache = new NetworkCacheService(initializationService, snapshotRepository, 60000, 0,
+				mock(ApplicationEventPublisher.class));
+	}
+
+	@Test
+	public void snapshot_is_empty_before_first_refresh() {
+		assertFalse(networkCache.getSnapshot().isPresent());
+	}
+
+	@Test
+	public void restore_publishes_saved_snapshot() throws Exception {
+		NetworkSnapshot saved = new NetworkSnapshot(Collections.<BusLine>emptyList(),
+				Collections.<String, String>emptyMap(), System.currentTimeMillis());
+		when(snapshotRepository.load()).thenReturn(Optional.of(saved));
+
+		networkCache.restore();
+		networkCache.refreshIfStale();
+
+		assertSame(saved, networkCache.getSnapshot().get());
+		verify(initializationService, never()).loadNetwork();
+	}
+
+	@Test
+	public void refresh_saves_published_snapshot() throws Exception {
+		when(initializationService.loadNetwork()).thenReturn(new NetworkLoadResult(
+				Collections.singletonList(new BusLine("1", "Bronzeville/Union Station", "#336633")),
+				Collections.<String, String>emptyMap()));
+
+		networkCache.refreshIfStale();
+
+		verify(snapshotRepository).save(networkCache.getSnapshot().get());
+	}
+
+	@Test
+	public void failed_refresh_keeps_current_snapshot() throws Exception {
+		BusLine line = new BusLine("1", "Bronzeville/Union Station", "#336633");
+		when(initializationService.loadNetwork()).thenReturn(
+				new NetworkLoadResult(Collections.singletonList(line), Collections.<String, String>emptyMap()));
+		networkCache.refresh();
+		NetworkSnapshot first = networkCache.getSnapshot().get();
+
+		when(initializationService.loadNetwork()).thenThrow(new ResourceAccessException("CTA is down"));
+		networkCache.refresh();
+
+		assertSame(first, networkCache.getSnapshot().get());
+	}
+
+	@Test
+	public void failed_route_keeps_its_previous_version() throws Exception {
+		BusLine good = new BusLine("1", "Bronzeville/Union Station", "#336633");
+		when(initializationService.loadNetwork()).thenReturn(
+				new NetworkLoadResult(Collections.singletonList(good), Collections.<String, String>emptyMap()));
+		networkCache.refresh();
+
+		BusLine failed = new BusLine("1", "Bronzeville/Union Station", "#336633");
+		when(initializationService.loadNetwork()).thenReturn(new NetworkLoadResult(
+				Collections.singletonList(failed), Collections.singletonMap("1", "directions: timeout")));
+		networkCache.refresh();
+
+		NetworkSnapshot snapshot = networkCache.getSnapshot().get();
+		assertEquals(good, snapshot.getBusLines().get(0));
+		assertTrue(snapshot.getFailures().isEmpty());
+		assertEquals(1, snapshot.getBusLines().size());
+	}
+
+	@Test
+	public void refreshes_between_full_refreshes_only_load_changes() throws Exception {
+		networkCache = new NetworkCacheService(initializationService, snapshotRepository, 60000, 3600000,
+				mock(ApplicationEventPublisher.class));
+		NetworkLoadResult loaded = new NetworkLoadResult(
+				Collections.singletonList(new BusLine("1", "Bronzeville/Union Station", "#336633")),
+				Collections.<String, String>emptyMap());
+		when(initializationService.loadNetwork()).thenReturn(loaded);
+		when(initializationService.loadChanges(any(NetworkSnapshot.class))).thenReturn(loaded);
+
+		networkCache.refresh();
+		NetworkSnapshot first = networkCache.getSnapshot().get();
+		networkCache.refresh();
+
+		verify(initializationService, times(1)).loadNetwork();
+		verify(initializationService).loadChanges(first);
+	}
+}
@@ -0,0 +1,132 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+import com.lamarjs.route_tracker.models.Stop;
+
+public class NetworkInitializationServiceTest {
+
+	BustimeAPIRequest request;
+	NetworkInitializationService initializationService;
+
+	@Before
+	public void setUp() throws Exception {
+		request = mock(BustimeAPIRequest.class);
+		initializationService = new NetworkInitializationService(request, 4);
+
+		when(request.requestDirections("1"))
+				.thenReturn(Arrays.asList(new Direction("Northbound", null), new Direction("Southbound", null)));
+		when(request.requestStops("1", "Northbound"))
+				.thenReturn(Collections.singletonList(new Stop(1509, "1509 S Michigan", 41.86, -87.62)));
+		when(request.requestStops("1", "Southbound"))
+				.thenReturn(Collections.singletonList(new Stop(1510, "Michigan & 15th", 41.86, -87.62)));
+	}
+
+	@After
+	public void tearDown() {
+		initializationService.shutdown();
+	}
+
+	@Test
+	public void initialize_fills_directions_and_stops_for_every_busline() {
+		BusLine line = new BusLine("1", "Bronzeville/Union Station", "#336633");
+
+		NetworkLoadResult result = initializationService.initialize(Collections.singletonList(line));
+
+		assertTrue(result.getFailures().isEmpty());
+		assertEquals("1509 S Michigan", line.getDirections().get(0).getStops().get(0).getStpnm());
+		assertEquals("Michigan & 15th", line.getDirections().get(1).getStops().get(0).getStpnm());
+	}
+
+	@Test
+	public void initialize_reports_failures_per_route_without_aborting_others() throws Exception {
+		when(request.requestDirections("1000")).thenThrow(new BusTimeErrorReceivedException("No data found for parameter"));
+		List<BusLine> busLines = Arrays.asList(new BusLine("1", "Bronzeville/Union Station", "#336633"),
+				new BusLine("1000", "Not A Route", "#000000"));
+
+		NetworkLoadResult result = initializationService.initialize(busLines);
+
+		assertEquals(1, result.getFailures().size());
+		assertTrue(result.getFailures().get("1000").contains("No data found for parameter"));
+		assertNull(busLines.get(1).getDirections());
+		assertEquals(2, busLines.get(0).getDirections().size());
+	}
+
+	@Test
+	public void initialize_reports_failed_stops_against_their_route() throws Exception {
+		when(request.requestStops("1", "Southbound")).thenThrow(new BusTimeErrorReceivedException("Stop failure"));
+		BusLine line = new BusLine("1", "Bronzeville/Union Station", "#336633");
+
+		NetworkLoadResult result = initializationService.initialize(Collections.singletonList(line));
+
+		assertTrue(result.getFailures().get("1").startsWith("Southbound stops:"));
+		assertEquals(1, line.getDirections().get(0).getStops().size());
+	}
+
+	@Test
+	public void changes_only_refetch_stops_for_new_or_changed_directions() throws Exception {
+		BusLine unchanged = new BusLine("1", "Bronzeville/Union Station", "#336633");
+		initializationService.initialize(Collections.singletonList(unchanged));
+		BusLine renamed = new BusLine("3", "King Drive", "#00ff00",
+				Collections.singletonList(new Direction("Northbound", Collections.singletonList(new Stop()))));
+		BusLine rerouted = new BusLine("5", "South Shore Drive", "#ffff00",
+				Collections.singletonList(new Direction("Northbound", Collections.singletonList(new Stop()))));
+		BusLine removed = new BusLine("2", "Hyde Park Express", "#0000ff", Collections.<Direction>emptyList());
+		NetworkSnapshot previous = new NetworkSnapshot(Arrays.asList(unchanged, renamed, removed, rerouted),
+				Collections.<String, String>emptyMap(), 0);
+
+		when(request.requestRoutes()).thenReturn(Arrays.asList(new BusLine("1", "Bronzeville/Union Station", "#336633"),
+				new BusLine("3", "King Drive Express", "#00ff00"), new BusLine("4", "Cottage Grove", "#ff0000"),
+				new BusLine("5", "South Shore Drive", "#ffff00")));
+		when(request.requestDirections("3")).thenReturn(Collections.singletonList(new Direction("Northbound", null)));
+		when(request.requestDirections("4")).thenReturn(Collections.singletonList(new Direction("Southbound", null)));
+		when(request.requestStops("4", "Southbound")).thenReturn(Collections.singletonList(new Stop()));
+		when(request.requestDirections("5")).thenReturn(Collections.singletonList(new Direction("Eastbound", null)));
+		when(request.requestStops("5", "Eastbound")).thenReturn(Arrays.asList(new Stop(), new Stop()));
+
+		NetworkLoadResult result = initializationService.loadChanges(previous);
+
+		assertEquals(4, result.getBusLines().size());
+		assertEquals(previous.getBusLines().get(0), result.getBusLines().get(0));
+		assertEquals("King Drive Express", result.getBusLines().get(1).getRtnm());
+		assertEquals(1, result.getBusLines().get(1).getDirections().get(0).getStops().size());
+		assertEquals(1, result.getBusLines().get(2).getDirections().get(0).getStops().size());
+		assertEquals(2, result.getBusLines().get(3).getDirections().get(0).getStops().size());
+		verify(request, times(2)).requestDirections("1");
+		verify(request, times(1)).requestStops("1", "Northbound");
+		verify(request, never()).requestStops("3", "Northbound");
+	}
+
+	@Test
+	public void fingerprints_detect_stop_changes() {
+		Stop stop = new Stop(1509, "1509 S Michigan", 41.86, -87.62);
+		BusLine line = new BusLine("1", "Bronzeville/Union Station", "#336633",
+				Collections.singletonList(new Direction("Northbound", Collections.singletonList(stop))));
+		long before = NetworkFingerprint.ofBusLine(line);
+
+		stop.setLat(41.87);
+
+		assertNotEquals(before, NetworkFingerprint.ofBusLine(line));
+		assertEquals(NetworkFingerprint.ofRoute(line),
+				NetworkFingerprint.ofRoute(new BusLine("1", "Bronzeville/Union Station", "#336633")));
+	}
+}
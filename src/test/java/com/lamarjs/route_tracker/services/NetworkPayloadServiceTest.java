@@ -0,0 +1,67 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lamarjs.route_tracker.models.BusLine;
+
+public class NetworkPayloadServiceTest {
+
+	NetworkCacheService networkCache;
+	NetworkPayloadService payloadService;
+
+	@Before
+	public void setUp() {
+		networkCache = mock(NetworkCacheService.class);
+		payloadService = new NetworkPayloadService(networkCache, new ObjectMapper());
+	}
+
+	private NetworkSnapshot snapshot(String rtnm) {
+		return new NetworkSnapshot(Collections.singletonList(new BusLine("4", rtnm, "#ff0000")),
+				Collections.<String, String>emptyMap(), System.currentTimeMillis());
+	}
+
+	@Test
+	public void payload_is_built_once_per_snapshot() throws Exception {
+		NetworkSnapshot snapshot = snapshot("Cottage Grove");
+		when(networkCache.getSnapshot()).thenReturn(Optional.of(snapshot));
+
+		NetworkPayload payload = payloadService.getPayload().get();
+
+		assertSame(payload, payloadService.getPayload().get());
+		assertTrue(new String(payload.getJson(), "UTF-8").contains("\"rtnm\":\"Cottage Grove\""));
+		assertArrayEquals(payload.getJson(),
+				IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(payload.getGzip()))));
+	}
+
+	@Test
+	public void etag_follows_the_content() {
+		when(networkCache.getSnapshot()).thenReturn(Optional.of(snapshot("Cottage Grove")));
+		NetworkPayload first = payloadService.getPayload().get();
+		when(networkCache.getSnapshot()).thenReturn(Optional.of(snapshot("Cottage Grove")));
+		NetworkPayload same = payloadService.getPayload().get();
+		when(networkCache.getSnapshot()).thenReturn(Optional.of(snapshot("King Drive")));
+		NetworkPayload changed = payloadService.getPayload().get();
+
+		assertEquals(first.getEtag(), same.getEtag());
+		assertNotEquals(first.getEtag(), changed.getEtag());
+		assertTrue(first.matches("\"other\", " + first.getGzipEtag()));
+		assertFalse(first.matches(changed.getEtag()));
+	}
+}
@@ -0,0 +1,134 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.models.Prediction;
+
+public class PredictionBatcherTest {
+
+	BustimeAPIRequest request;
+	PredictionBatcher batcher;
+	ExecutorService callers = Executors.newFixedThreadPool(4);
+
+	@Before
+	public void setUp() {
+		request = mock(BustimeAPIRequest.class);
+		batcher = new PredictionBatcher(request, 50, 10, 2);
+	}
+
+	@After
+	public void tearDown() {
+		batcher.shutdown();
+		callers.shutdownNow();
+	}
+
+	@Test
+	public void single_stop_lookups_in_one_window_share_one_request() throws Exception {
+		when(request.requestPredictionBatchAsync(anyString(), anyInt(), anyLong()))
+				.thenReturn(CompletableFuture.completedFuture(new PredictionBatch(
+						Arrays.asList(prediction(1584, "4"), prediction(1585, "4"), prediction(1584, "X4")),
+						Collections.singletonMap("1586", "No arrival times"))));
+
+		Future<List<Prediction>> first = callers.submit(() -> batcher.getPredictions("1584", "", 2));
+		Future<List<Prediction>> second = callers.submit(() -> batcher.getPredictions("1585", "", 5));
+		Future<List<Prediction>> failed = callers.submit(() -> batcher.getPredictions("1586", "", 5));
+
+		assertEquals(2, first.get(5, TimeUnit.SECONDS).size());
+		assertEquals(1585, second.get(5, TimeUnit.SECONDS).get(0).getStpid());
+		try {
+			failed.get(5, TimeUnit.SECONDS);
+			fail("Expected the stop error to be thrown");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof BusTimeErrorReceivedException);
+		}
+		verify(request, times(1)).requestPredictionBatchAsync(anyString(), anyInt(), anyLong());
+	}
+
+	@Test
+	public void stop_ids_are_matched_as_numbers() throws Exception {
+		when(request.requestPredictionBatchAsync(anyString(), anyInt(), anyLong()))
+				.thenReturn(CompletableFuture.completedFuture(new PredictionBatch(
+						Arrays.asList(prediction(1584, "4")), Collections.<String, String>emptyMap())));
+
+		List<Prediction> padded = batcher.getPredictions("01584", "", 5);
+
+		assertEquals(1584, padded.get(0).getStpid());
+		verify(request).requestPredictionBatchAsync(eq("1584"), anyInt(), anyLong());
+	}
+
+	@Test
+	public void full_batch_is_sent_without_waiting_for_the_window() throws Exception {
+		batcher.shutdown();
+		batcher = new PredictionBatcher(request, 60000, 10, 2);
+		when(request.requestPredictionBatchAsync(anyString(), anyInt(), anyLong())).thenReturn(CompletableFuture.completedFuture(
+				new PredictionBatch(Collections.<Prediction>emptyList(), Collections.<String, String>emptyMap())));
+
+		List<Future<List<Prediction>>> lookups = new ArrayList<>();
+		ExecutorService manyCallers = Executors.newFixedThreadPool(PredictionBatcher.MAX_STOPS_PER_REQUEST);
+		for (int stpid = 0; stpid < PredictionBatcher.MAX_STOPS_PER_REQUEST; stpid++) {
+			String stop = String.valueOf(stpid);
+			lookups.add(manyCallers.submit(() -> batcher.getPredictions(stop, "", 5)));
+		}
+		for (Future<List<Prediction>> lookup : lookups) {
+			assertTrue(lookup.get(5, TimeUnit.SECONDS).isEmpty());
+		}
+		manyCallers.shutdown();
+		verify(request, times(1)).requestPredictionBatchAsync(anyString(), anyInt(), anyLong());
+	}
+
+	@Test
+	public void multi_stop_requests_are_passed_through() throws Exception {
+		when(request.requestPredictionsAsync(eq("1584,1585"), eq("4"), eq(5), anyLong()))
+				.thenReturn(CompletableFuture.completedFuture(Collections.<Prediction>emptyList()));
+
+		batcher.getPredictions("1584,1585", "4", 5);
+
+		verify(request).requestPredictionsAsync(eq("1584,1585"), eq("4"), eq(5), anyLong());
+	}
+
+	@Test
+	public void route_filtered_and_large_top_lookups_are_passed_through() throws Exception {
+		when(request.requestPredictionsAsync(anyString(), anyString(), anyInt(), anyLong()))
+				.thenReturn(CompletableFuture.completedFuture(Collections.<Prediction>emptyList()));
+
+		batcher.getPredictions("1584", "X4", 5);
+		batcher.getPredictions("1584", "", 11);
+
+		verify(request).requestPredictionsAsync(eq("1584"), eq("X4"), eq(5), anyLong());
+		verify(request).requestPredictionsAsync(eq("1584"), eq(""), eq(11), anyLong());
+		verify(request, times(0)).requestPredictionBatchAsync(anyString(), anyInt(), anyLong());
+	}
+
+	private Prediction prediction(int stpid, String rt) {
+		Prediction prediction = new Prediction();
+		prediction.setStpid(stpid);
+		prediction.setRt(rt);
+		return prediction;
+	}
+}
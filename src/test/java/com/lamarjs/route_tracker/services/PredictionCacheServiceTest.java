@@ -0,0 +1,169 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.lamarjs.route_tracker.exceptions.BusTimeErrorReceivedException;
+import com.lamarjs.route_tracker.models.Prediction;
+
+public class PredictionCacheServiceTest {
+
+	PredictionBatcher batcher;
+	UpstreamGuard upstreamGuard;
+	PredictionCacheService predictionCache;
+	List<Prediction> predictions = Collections.singletonList(new Prediction());
+
+	@Before
+	public void setUp() {
+		batcher = mock(PredictionBatcher.class);
+		upstreamGuard = mock(UpstreamGuard.class);
+		predictionCache = new PredictionCacheService(batcher, upstreamGuard, 60000, 600000);
+	}
+
+	@Test
+	public void equivalent_requests_share_a_cache_entry() throws Exception {
+		when(batcher.getPredictionsAsync(eq("1584,1585"), eq("4"), eq(5), anyLong())).thenReturn(CompletableFuture.completedFuture(predictions));
+
+		predictionCache.getPredictions("1584,1585", "4", 5);
+		List<Prediction> actual = predictionCache.getPredictions(" 1585, 1584,1584", "4", 5);
+
+		assertEquals(predictions, actual);
+		verify(batcher, times(1)).getPredictionsAsync(anyString(), anyString(), anyInt(), anyLong());
+	}
+
+	@Test(expected = BusTimeErrorReceivedException.class)
+	public void bustime_errors_are_cached() throws Exception {
+		CompletableFuture<List<Prediction>> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new BusTimeErrorReceivedException("No arrival times"));
+		when(batcher.getPredictionsAsync(eq("1584"), eq(""), eq(5), anyLong())).thenReturn(failed);
+
+		try {
+			predictionCache.getPredictions("1584", "", 5);
+		} catch (BusTimeErrorReceivedException e) {
+			// Expected, the second call should be answered from the cache.
+		}
+		try {
+			predictionCache.getPredictions("1584", "", 5);
+		} finally {
+			verify(batcher, times(1)).getPredictionsAsync(anyString(), anyString(), anyInt(), anyLong());
+		}
+	}
+
+	@Test
+	public void concurrent_misses_share_one_upstream_call() throws Exception {
+		CountDownLatch upstreamStarted = new CountDownLatch(1);
+		CountDownLatch releaseUpstream = new CountDownLatch(1);
+		when(batcher.getPredictionsAsync(eq("1584"), eq(""), eq(5), anyLong())).thenAnswer(invocation -> CompletableFuture.supplyAsync(() -> {
+			upstreamStarted.countDown();
+			try {
+				releaseUpstream.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return predictions;
+		}));
+
+		ExecutorService callers = Executors.newFixedThreadPool(8);
+		List<Future<List<Prediction>>> results = new ArrayList<>();
+		results.add(callers.submit(() -> predictionCache.getPredictions("1584", "", 5)));
+		upstreamStarted.await(5, TimeUnit.SECONDS);
+		for (int i = 0; i < 7; i++) {
+			results.add(callers.submit(() -> predictionCache.getPredictions("1584", "", 5)));
+		}
+		Thread.sleep(100);
+		releaseUpstream.countDown();
+
+		for (Future<List<Prediction>> result : results) {
+			assertEquals(predictions.get(0), result.get(5, TimeUnit.SECONDS).get(0));
+		}
+		callers.shutdown();
+		verify(batcher, times(1)).getPredictionsAsync(anyString(), anyString(), anyInt(), anyLong());
+	}
+
+	@Test
+	public void countdowns_are_recomputed_when_served_from_cache() throws Exception {
+		long now = System.currentTimeMillis();
+		Prediction soon = prediction(now + TimeUnit.MINUTES.toMillis(8), "7");
+		Prediction departed = prediction(now - TimeUnit.MINUTES.toMillis(5), "DUE");
+		when(batcher.getPredictionsAsync(eq("1584"), eq(""), eq(5), anyLong()))
+				.thenReturn(CompletableFuture.completedFuture(Arrays.asList(departed, soon)));
+
+		List<Prediction> actual = predictionCache.getPredictions("1584", "", 5);
+
+		assertEquals(1, actual.size());
+		assertEquals("7", actual.get(0).getPrdctdn());
+		assertEquals("7", soon.getPrdctdn());
+	}
+
+	@Test
+	public void expired_entry_is_served_stale_when_upstream_fails() throws Exception {
+		predictionCache = new PredictionCacheService(batcher, upstreamGuard, 0, 600000);
+		CompletableFuture<List<Prediction>> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new ResourceAccessException("CTA is down"));
+		when(batcher.getPredictionsAsync(eq("1584"), eq(""), eq(5), anyLong())).thenReturn(CompletableFuture.completedFuture(predictions))
+				.thenReturn(failed);
+
+		assertFalse(predictionCache.getPredictionResultAsync("1584", "", 5).get().isStale());
+		PredictionResult stale = predictionCache.getPredictionResultAsync("1584", "", 5).get();
+
+		assertTrue(stale.isStale());
+		assertEquals(predictions, stale.getPredictions());
+	}
+
+	@Test
+	public void expired_entry_is_served_stale_without_calling_upstream_while_breaker_is_open() throws Exception {
+		predictionCache = new PredictionCacheService(batcher, upstreamGuard, 0, 600000);
+		when(batcher.getPredictionsAsync(eq("1584"), eq(""), eq(5), anyLong())).thenReturn(CompletableFuture.completedFuture(predictions));
+		predictionCache.getPredictions("1584", "", 5);
+
+		when(upstreamGuard.isOpen()).thenReturn(true);
+		PredictionResult stale = predictionCache.getPredictionResultAsync("1584", "", 5).get();
+
+		assertTrue(stale.isStale());
+		verify(batcher, times(1)).getPredictionsAsync(anyString(), anyString(), anyInt(), anyLong());
+	}
+
+	@Test(expected = ExecutionException.class)
+	public void failure_without_a_cached_entry_is_not_hidden() throws Exception {
+		CompletableFuture<List<Prediction>> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new ResourceAccessException("CTA is down"));
+		when(batcher.getPredictionsAsync(eq("1584"), eq(""), eq(5), anyLong())).thenReturn(failed);
+
+		predictionCache.getPredictionResultAsync("1584", "", 5).get();
+	}
+
+	private static Prediction prediction(long prdtm, String prdctdn) {
+		Prediction prediction = new Prediction();
+		prediction.setPrdtm(Prediction.BUSTIME_FORMAT
+				.format(Instant.ofEpochMilli(prdtm).atZone(Prediction.BUSTIME_ZONE).truncatedTo(ChronoUnit.MINUTES)));
+		prediction.setPrdctdn(prdctdn);
+		return prediction;
+	}
+}
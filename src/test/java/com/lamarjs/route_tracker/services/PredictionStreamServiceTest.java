@@ -0,0 +1,61 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.lamarjs.route_tracker.models.Prediction;
+
+public class PredictionStreamServiceTest {
+
+	PredictionCacheService predictionCache;
+	PredictionStreamService streamService;
+
+	@Before
+	public void setUp() {
+		predictionCache = mock(PredictionCacheService.class);
+		when(predictionCache.getPredictionsAsync(anyString(), anyString(), anyInt()))
+				.thenReturn(CompletableFuture.completedFuture(Collections.<Prediction>emptyList()));
+		streamService = new PredictionStreamService(predictionCache, 60000, 60000, 1);
+	}
+
+	@After
+	public void tearDown() {
+		streamService.shutdown();
+	}
+
+	@Test
+	public void subscribers_to_the_same_stops_share_one_poller() {
+		streamService.subscribe("1584,1585", "", 5);
+		streamService.subscribe("1585, 1584", "", 5);
+		streamService.subscribe("1586", "", 5);
+
+		assertEquals(2, streamService.getPollerCount());
+		verify(predictionCache, timeout(1000)).getPredictionsAsync("1584,1585", "", 5);
+	}
+
+	@Test
+	public void poller_stops_when_last_subscriber_leaves() {
+		SseEmitter first = streamService.subscribe("1584", "", 5);
+		SseEmitter second = streamService.subscribe("1584", "", 5);
+		PredictionKey key = PredictionKey.of("1584", "", 5);
+
+		streamService.unsubscribe(key, first);
+		assertEquals(1, streamService.getPollerCount());
+
+		streamService.unsubscribe(key, second);
+		assertEquals(0, streamService.getPollerCount());
+	}
+}
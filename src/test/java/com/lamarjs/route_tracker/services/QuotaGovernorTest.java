@@ -0,0 +1,91 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.lamarjs.route_tracker.exceptions.QuotaExceededException;
+
+public class QuotaGovernorTest {
+
+	@Test
+	public void lower_lanes_can_not_use_the_reserved_daily_quota() {
+		QuotaGovernor governor = new QuotaGovernor(10, 100, 0.2, 0.5, 0, 0);
+
+		for (int i = 0; i < 5; i++) {
+			governor.acquire(RequestPriority.PREFETCH);
+		}
+		assertFalse(governor.tryAcquire(RequestPriority.PREFETCH));
+
+		for (int i = 0; i < 3; i++) {
+			governor.acquire(RequestPriority.REFRESH);
+		}
+		assertFalse(governor.tryAcquire(RequestPriority.REFRESH));
+
+		governor.acquire(RequestPriority.INTERACTIVE);
+		governor.acquire(RequestPriority.INTERACTIVE);
+		assertEquals(0, governor.getDailyRemaining());
+	}
+
+	@Test(expected = QuotaExceededException.class)
+	public void exhausted_daily_quota_sheds_interactive_requests() {
+		QuotaGovernor governor = new QuotaGovernor(1, 100, 0, 0, 1000, 1000);
+
+		governor.acquire(RequestPriority.INTERACTIVE);
+		governor.acquire(RequestPriority.INTERACTIVE);
+	}
+
+	@Test
+	public void requests_wait_for_the_per_second_rate() {
+		QuotaGovernor governor = new QuotaGovernor(1000, 20, 0, 0, 1000, 1000);
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 25; i++) {
+			governor.acquire(RequestPriority.INTERACTIVE);
+		}
+
+		// 20 tokens are available immediately, the remaining 5 refill at 20/s.
+		assertTrue(System.currentTimeMillis() - start >= 200);
+	}
+
+	@Test
+	public void limits_scale_with_the_keys_in_rotation() {
+		ApiKeyPool keyPool = new ApiKeyPool("a,b", ApiKeyPool.Selection.ROUND_ROBIN);
+		QuotaGovernor governor = new QuotaGovernor(10, 5, 0, 0, 0, 0, keyPool);
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(governor.tryAcquire(RequestPriority.INTERACTIVE));
+		}
+		assertFalse(governor.tryAcquire(RequestPriority.INTERACTIVE));
+		assertEquals(10, governor.getDailyRemaining());
+
+		keyPool.recordError("b", "Invalid API access key supplied");
+		assertEquals(0, governor.getDailyRemaining());
+	}
+
+	@Test(expected = QuotaExceededException.class)
+	public void requests_are_shed_after_their_max_wait() {
+		QuotaGovernor governor = new QuotaGovernor(1000, 1, 0, 0, 50, 50);
+
+		governor.acquire(RequestPriority.INTERACTIVE);
+		governor.acquire(RequestPriority.INTERACTIVE);
+	}
+
+	@Test
+	public void refused_try_acquire_is_skipped_rather_than_shed() {
+		QuotaGovernor governor = new QuotaGovernor(1, 100, 0, 0, 0, 0);
+
+		assertTrue(governor.tryAcquire(RequestPriority.INTERACTIVE));
+		assertFalse(governor.tryAcquire(RequestPriority.INTERACTIVE));
+
+		assertEquals(1L, metric(governor, "bustime.quota.interactive.skipped"));
+		assertEquals(0L, metric(governor, "bustime.quota.interactive.shed"));
+	}
+
+	private static Number metric(QuotaGovernor governor, String name) {
+		return governor.metrics().stream().filter(metric -> metric.getName().equals(name)).findFirst().get()
+				.getValue();
+	}
+}
@@ -0,0 +1,128 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lamarjs.route_tracker.metrics.BustimeMetrics;
+import com.lamarjs.route_tracker.services.BustimeAPIRequest.RequestType;
+
+public class RequestHedgerTest {
+
+	BustimeMetrics metrics;
+	ExecutorService executor = Executors.newFixedThreadPool(4);
+	CountDownLatch releaseSlowAttempts = new CountDownLatch(1);
+	AtomicInteger attempts = new AtomicInteger();
+	RequestHedger hedger;
+
+	@Before
+	public void setUp() {
+		metrics = new BustimeMetrics();
+		for (int i = 0; i < 100; i++) {
+			metrics.recordUpstream(RequestType.PREDICTIONS, 10, 0, 0);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		releaseSlowAttempts.countDown();
+		hedger.shutdown();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * The first attempt hangs until the test ends, later attempts answer right
+	 * away.
+	 */
+	private String firstAttemptHangs(Runnable admission) throws InterruptedException {
+		admission.run();
+		if (attempts.incrementAndGet() == 1) {
+			releaseSlowAttempts.await(5, TimeUnit.SECONDS);
+			return "first";
+		}
+		return "hedge";
+	}
+
+	@Test
+	public void slow_attempt_is_hedged_and_the_first_answer_wins() throws Exception {
+		hedger = new RequestHedger(new QuotaGovernor(1000, 1000, 0, 0, 1000, 1000), metrics, executor, 95, 100);
+
+		String result = hedger.send(RequestType.PREDICTIONS, RequestPriority.INTERACTIVE, RequestHedger.NO_DEADLINE,
+				this::firstAttemptHangs).get(1, TimeUnit.SECONDS);
+
+		assertEquals("hedge", result);
+		assertEquals(1, metrics.counter("bustime.upstream.getpredictions.hedged").sum());
+		assertEquals(1, metrics.counter("bustime.upstream.getpredictions.hedge_wins").sum());
+	}
+
+	@Test
+	public void no_hedge_is_sent_until_enough_latencies_are_known() throws Exception {
+		hedger = new RequestHedger(new QuotaGovernor(1000, 1000, 0, 0, 1000, 1000), metrics, executor, 95, 1000);
+
+		String result = hedger.send(RequestType.PREDICTIONS, RequestPriority.INTERACTIVE, RequestHedger.NO_DEADLINE,
+				admission -> {
+					admission.run();
+					attempts.incrementAndGet();
+					TimeUnit.MILLISECONDS.sleep(100);
+					return "first";
+				}).get(1, TimeUnit.SECONDS);
+
+		assertEquals("first", result);
+		assertEquals(1, attempts.get());
+	}
+
+	@Test
+	public void no_hedge_is_sent_without_quota() throws Exception {
+		// One token per second: the first attempt takes it, leaving none.
+		hedger = new RequestHedger(new QuotaGovernor(1000, 1, 0, 0, 1000, 1000), metrics, executor, 95, 100);
+
+		hedger.send(RequestType.PREDICTIONS, RequestPriority.INTERACTIVE, RequestHedger.NO_DEADLINE,
+				this::firstAttemptHangs);
+		TimeUnit.MILLISECONDS.sleep(200);
+
+		assertEquals(1, attempts.get());
+		assertEquals(0, metrics.counter("bustime.upstream.getpredictions.hedged").sum());
+	}
+
+	@Test
+	public void request_times_out_at_the_deadline() throws Exception {
+		hedger = new RequestHedger(new QuotaGovernor(1000, 1000, 0, 0, 1000, 1000), metrics, executor, 0, 0);
+
+		try {
+			hedger.send(RequestType.PREDICTIONS, RequestPriority.INTERACTIVE, System.currentTimeMillis() + 50,
+					this::firstAttemptHangs).get(1, TimeUnit.SECONDS);
+			fail("Expected the request to time out");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		assertEquals(1, metrics.counter("bustime.upstream.getpredictions.deadline_exceeded").sum());
+	}
+
+	@Test
+	public void hedge_delay_is_recomputed_every_few_latencies() {
+		hedger = new RequestHedger(new QuotaGovernor(1000, 1000, 0, 0, 1000, 1000), metrics, executor, 50, 100);
+		assertEquals(10, hedger.getHedgeDelay(RequestType.PREDICTIONS));
+
+		for (int i = 0; i < RequestHedger.RECOMPUTE_EVERY - 1; i++) {
+			metrics.recordUpstream(RequestType.PREDICTIONS, 500, 0, 0);
+		}
+		assertEquals(10, hedger.getHedgeDelay(RequestType.PREDICTIONS));
+
+		for (int i = 0; i < 100; i++) {
+			metrics.recordUpstream(RequestType.PREDICTIONS, 500, 0, 0);
+		}
+		assertEquals(500, hedger.getHedgeDelay(RequestType.PREDICTIONS));
+	}
+}
@@ -0,0 +1,86 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+import com.lamarjs.route_tracker.models.RouteDirection;
+import com.lamarjs.route_tracker.models.Stop;
+
+public class StopDirectoryIndexTest {
+
+	StopDirectoryIndex directoryIndex;
+
+	@Before
+	public void setUp() {
+		NetworkCacheService networkCache = mock(NetworkCacheService.class);
+		when(networkCache.getSnapshot()).thenReturn(Optional.empty());
+		directoryIndex = new StopDirectoryIndex(networkCache);
+		directoryIndex.initialize();
+
+		Stop balbo = new Stop(1584, "Michigan & Balbo", 41.8732, -87.6244);
+		Stop jackson = new Stop(1585, "Michigan  & Jackson", 41.8781, -87.6244);
+		Stop madison = new Stop(1600, "Madison & State", 41.8820, -87.6278);
+		BusLine four = new BusLine("4", "Cottage Grove", "#ff0000",
+				Arrays.asList(new Direction("Northbound", Arrays.asList(balbo, jackson)),
+						new Direction("Southbound", Collections.singletonList(balbo))));
+		BusLine three = new BusLine("3", "King Drive", "#00ff00",
+				Collections.singletonList(new Direction("Northbound", Arrays.asList(balbo, madison))));
+
+		directoryIndex.onNetworkPublished(new NetworkSnapshotPublishedEvent(this,
+				new NetworkSnapshot(Arrays.asList(four, three), Collections.<String, String>emptyMap(), 0)));
+	}
+
+	@Test
+	public void routes_for_stop_include_every_route_and_direction() {
+		List<RouteDirection> routes = directoryIndex.getRoutesForStop(1584);
+
+		assertEquals(Arrays.asList(new RouteDirection("4", "Northbound"), new RouteDirection("4", "Southbound"),
+				new RouteDirection("3", "Northbound")), routes);
+		assertTrue(directoryIndex.getRoutesForStop(9999).isEmpty());
+	}
+
+	@Test
+	public void every_stop_of_a_large_network_is_found_by_id() {
+		List<Stop> stops = new ArrayList<>();
+		for (int stpid = 0; stpid < 20000; stpid += 3) {
+			stops.add(new Stop(stpid, "Stop " + stpid, 41.88, -87.62));
+		}
+		BusLine line = new BusLine("9", "Ashland", "#0000ff",
+				Collections.singletonList(new Direction("Northbound", stops)));
+		directoryIndex.onNetworkPublished(new NetworkSnapshotPublishedEvent(this,
+				new NetworkSnapshot(Collections.singletonList(line), Collections.<String, String>emptyMap(), 0)));
+
+		for (int stpid = 0; stpid < 20000; stpid++) {
+			assertEquals(stpid % 3 == 0 ? 1 : 0, directoryIndex.getRoutesForStop(stpid).size());
+		}
+	}
+
+	@Test
+	public void search_matches_normalized_prefix_in_name_order() {
+		List<Stop> matches = directoryIndex.searchByName(" michigan & ", 10);
+
+		assertEquals(2, matches.size());
+		assertEquals(1584, matches.get(0).getStpid());
+		assertEquals(1585, matches.get(1).getStpid());
+	}
+
+	@Test
+	public void search_honors_limit() {
+		assertEquals(1, directoryIndex.searchByName("m", 1).size());
+		assertEquals(3, directoryIndex.searchByName("M", 10).size());
+		assertTrue(directoryIndex.searchByName("Zzz", 10).isEmpty());
+	}
+}
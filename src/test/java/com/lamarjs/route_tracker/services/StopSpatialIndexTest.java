@@ -0,0 +1,68 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lamarjs.route_tracker.models.BusLine;
+import com.lamarjs.route_tracker.models.Direction;
+import com.lamarjs.route_tracker.models.NearbyStop;
+import com.lamarjs.route_tracker.models.Stop;
+
+public class StopSpatialIndexTest {
+
+	StopSpatialIndex spatialIndex;
+
+	@Before
+	public void setUp() {
+		NetworkCacheService networkCache = mock(NetworkCacheService.class);
+		when(networkCache.getSnapshot()).thenReturn(Optional.empty());
+		spatialIndex = new StopSpatialIndex(networkCache);
+		spatialIndex.initialize();
+
+		Direction northbound = new Direction("Northbound",
+				Arrays.asList(new Stop(1584, "Michigan & Balbo", 41.8732, -87.6244),
+						new Stop(1585, "Michigan & Jackson", 41.8781, -87.6244),
+						new Stop(1596, "Michigan & Chicago", 41.8966, -87.6243)));
+		Direction southbound = new Direction("Southbound",
+				Collections.singletonList(new Stop(1584, "Michigan & Balbo", 41.8732, -87.6244)));
+		BusLine line = new BusLine("4", "Cottage Grove", "#ff0000", Arrays.asList(northbound, southbound));
+
+		spatialIndex.onNetworkPublished(new NetworkSnapshotPublishedEvent(this,
+				new NetworkSnapshot(Collections.singletonList(line), Collections.<String, String>emptyMap(), 0)));
+	}
+
+	@Test
+	public void nearby_returns_distinct_stops_within_radius_closest_first() {
+		List<NearbyStop> nearby = spatialIndex.nearby(41.8735, -87.6244, 700, 10);
+
+		assertEquals(2, nearby.size());
+		assertEquals(1584, nearby.get(0).getStop().getStpid());
+		assertEquals(1585, nearby.get(1).getStop().getStpid());
+		assertTrue(nearby.get(0).getDistance() < 50);
+	}
+
+	@Test
+	public void nearby_honors_limit_and_crosses_cells() {
+		List<NearbyStop> nearby = spatialIndex.nearby(41.885, -87.6244, 2000, 2);
+
+		assertEquals(2, nearby.size());
+		assertFalse(nearby.get(0).getDistance() > nearby.get(1).getDistance());
+	}
+
+	@Test
+	public void distance_matches_known_value() {
+		// One degree of latitude is about 111.2km.
+		assertEquals(111195, StopSpatialIndex.distance(41, -87, 42, -87), 100);
+	}
+}
@@ -0,0 +1,140 @@
+package com.lamarjs.route_tracker.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.lamarjs.route_tracker.exceptions.QuotaExceededException;
+import com.lamarjs.route_tracker.exceptions.UpstreamUnavailableException;
+import com.lamarjs.route_tracker.services.BustimeAPIRequest.RequestType;
+
+public class UpstreamGuardTest {
+
+	private void failCall(UpstreamGuard guard) {
+		try {
+			guard.call(RequestType.ROUTES, () -> {
+				throw new ResourceAccessException("timeout");
+			});
+			fail("Expected the call to fail");
+		} catch (ResourceAccessException expected) {
+		}
+	}
+
+	@Test
+	public void breaker_opens_after_consecutive_failures_and_rejects_calls() {
+		UpstreamGuard guard = new UpstreamGuard(3, 60000, 10, 0);
+
+		failCall(guard);
+		failCall(guard);
+		assertFalse(guard.isOpen());
+		failCall(guard);
+
+		assertTrue(guard.isOpen());
+		try {
+			guard.call(RequestType.PREDICTIONS, () -> "never sent");
+			fail("Expected the breaker to reject the call");
+		} catch (UpstreamUnavailableException expected) {
+		}
+	}
+
+	@Test
+	public void trial_call_after_open_period_closes_the_breaker() throws Exception {
+		UpstreamGuard guard = new UpstreamGuard(1, 50, 10, 0);
+		failCall(guard);
+		assertTrue(guard.isOpen());
+
+		TimeUnit.MILLISECONDS.sleep(80);
+
+		assertEquals("ok", guard.call(RequestType.ROUTES, () -> "ok"));
+		assertEquals(UpstreamGuard.State.CLOSED, guard.getState());
+	}
+
+	@Test
+	public void success_resets_failure_count_and_quota_shedding_does_not_count() {
+		UpstreamGuard guard = new UpstreamGuard(2, 60000, 10, 0);
+
+		failCall(guard);
+		guard.call(RequestType.ROUTES, () -> "ok");
+		failCall(guard);
+		try {
+			guard.call(RequestType.ROUTES, () -> {
+				throw new QuotaExceededException("quota");
+			});
+		} catch (QuotaExceededException expected) {
+		}
+
+		assertFalse(guard.isOpen());
+	}
+
+	@Test
+	public void unexpected_exception_gives_up_the_trial() throws Exception {
+		UpstreamGuard guard = new UpstreamGuard(1, 50, 10, 0);
+		failCall(guard);
+		TimeUnit.MILLISECONDS.sleep(80);
+
+		try {
+			guard.call(RequestType.PREDICTIONS, () -> {
+				throw new IllegalArgumentException("Not enough variable values available to expand 'x'");
+			});
+			fail("Expected the call to fail");
+		} catch (IllegalArgumentException expected) {
+		}
+
+		assertEquals("the next call is the trial", "ok", guard.call(RequestType.ROUTES, () -> "ok"));
+		assertEquals(UpstreamGuard.State.CLOSED, guard.getState());
+	}
+
+	@Test
+	public void client_errors_do_not_count_as_failures() {
+		UpstreamGuard guard = new UpstreamGuard(1, 60000, 10, 0);
+
+		try {
+			guard.call(RequestType.ROUTES, () -> {
+				throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+			});
+			fail("Expected the call to fail");
+		} catch (HttpClientErrorException expected) {
+		}
+
+		assertFalse(guard.isOpen());
+	}
+
+	@Test
+	public void bulkhead_limits_calls_per_request_type() throws Exception {
+		UpstreamGuard guard = new UpstreamGuard(5, 60000, 1, 0);
+		CountDownLatch inside = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService caller = Executors.newSingleThreadExecutor();
+		caller.submit(() -> guard.call(RequestType.STOPS, () -> {
+			inside.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		}));
+		inside.await();
+
+		try {
+			guard.call(RequestType.STOPS, () -> "rejected");
+			fail("Expected the full bulkhead to reject the call");
+		} catch (UpstreamUnavailableException expected) {
+		}
+		assertEquals("other types are unaffected", "ok", guard.call(RequestType.PREDICTIONS, () -> "ok"));
+
+		release.countDown();
+		caller.shutdown();
+	}
+}